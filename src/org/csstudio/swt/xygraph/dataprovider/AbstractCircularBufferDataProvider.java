@@ -0,0 +1,611 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.Calendar;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.csstudio.swt.xygraph.linearscale.Range;
+
+
+/**
+ * The common part of the data providers which keep the data of a trace in a circular buffer:
+ * the update modes, the triggers, the queue of published points and the indices of the
+ * data range. The subclasses only decide how the samples are stored, see {@link SampleBuffer}.
+ */
+public abstract class AbstractCircularBufferDataProvider extends AbstractDataProvider{
+	
+	public enum UpdateMode{
+		X_OR_Y("X or Y"),
+		X_AND_Y("X AND Y"),
+		X("X"),
+		Y("Y"),
+		TRIGGER("Trigger");
+				
+		private UpdateMode(String description) {
+			 this.description = description;
+		}
+		private String description;
+		
+		@Override
+		public String toString() {
+			return description;
+		}
+		public static String[] stringValues(){
+			String[] sv = new String[values().length];
+			int i=0;
+			for(UpdateMode p : values())
+				sv[i++] = p.toString();
+			return sv;
+		}
+	}	
+
+	public enum PlotMode{
+		LAST_N("Plot last n pts."),
+		N_STOP("Plot n pts & stop.");	
+				
+		private PlotMode(String description) {
+			 this.description = description;
+		}
+		private String description;
+		
+		@Override
+		public String toString() {
+			return description;
+		}
+		public static String[] stringValues(){
+			String[] sv = new String[values().length];
+			int i=0;
+			for(PlotMode p : values())
+				sv[i++] = p.toString();
+			return sv;
+		}
+	}
+	
+	private final SampleBuffer traceData;	
+	
+	/**
+	 * the data range of the samples in traceData, kept up to date as samples are added.
+	 */
+	private DataRangeTree dataRangeTree;
+	
+	private final double[] dataRange = new double[4];
+	
+	/**
+	 * the position of the lowest and highest y values in traceData, for {@link #getYMinMaxIndex(int, int, int[])}.
+	 */
+	private MinMaxPyramid minMaxPyramid;
+	
+	private double currentXData;
+	
+	private double currentYData;
+	
+	private long currentYDataTimestamp;	
+	
+	private boolean currentXDataChanged = false;
+	
+	private boolean currentYDataChanged = false;
+	
+	private boolean currentYDataTimestampChanged = false;
+	
+	private double[] currentXDataArray = new double[]{};
+	
+	private double[] currentYDataArray = new double[]{};
+	
+	private boolean currentXDataArrayChanged = false;
+	
+	private boolean currentYDataArrayChanged = false;
+	
+	private boolean xAxisDateEnabled = false;
+	
+	private boolean concatenate_data = true;
+	
+	/**
+	 * this indicates if the max and min of the data need to be recalculated.
+	 */
+	private boolean dataRangedirty = false;
+	
+	private UpdateMode updateMode = UpdateMode.X_AND_Y;
+	
+	private PlotMode plotMode = PlotMode.LAST_N;
+
+	/** Maximum number of published points waiting for the UI thread */
+	private static final int QUEUE_CAPACITY = 8192;
+	
+	/**
+	 * points published by other threads, created on the first {@link #publishSample(double, double)}.
+	 */
+	private final AtomicReference<SampleQueue> sampleQueue = new AtomicReference<SampleQueue>();
+	
+	private double[] drainXValues, drainYValues;
+	
+	private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+	
+	private final Runnable drainQueueTask = new Runnable(){
+		public void run() {
+			drainScheduled.set(false);
+			drainQueue();
+		}
+	};
+	
+	/**
+	 * @param chronological true if the data is sorted chronologically on xAxis.
+	 * @param traceData the empty buffer which stores the samples, with a buffer size of 100.
+	 */
+	AbstractCircularBufferDataProvider(boolean chronological, SampleBuffer traceData) {
+		super(chronological);
+		this.traceData = traceData;
+		dataRangeTree = new DataRangeTree(this, 100);
+		minMaxPyramid = new MinMaxPyramid(this, 100);
+	}
+
+	/**
+	 * @param currentXData the currentXData to set
+	 */
+	public void setCurrentXData(double newValue) {
+		this.currentXData = newValue;
+		currentXDataChanged = true;
+		tryToAddDataPoint();
+	}
+
+
+	/**Set current YData.
+	 * @param currentYData the currentYData to set
+	 */
+	public void setCurrentYData(double newValue) {
+		this.currentYData = newValue;
+		currentYDataChanged = true;
+		if(!xAxisDateEnabled|| (xAxisDateEnabled && currentYDataTimestampChanged))
+			tryToAddDataPoint();
+	}
+	
+	/**Add a sample.
+	 * @param sample
+	 */
+	public void addSample(ISample sample){
+		if(traceData.size() == traceData.getBufferSize() && plotMode == PlotMode.N_STOP)
+			return;
+		appendSample(sample);
+		fireDataChange();
+	}
+	
+	/**Append a block of points and notify the listeners once,
+	 * instead of once per point like {@link #addSample(ISample)}.
+	 * In {@link PlotMode#N_STOP}, the points which do not fit into the buffer are dropped.
+	 * @param xValues the x values of the points.
+	 * @param yValues the y values of the points.
+	 * @param offset the position of the first point in the arrays.
+	 * @param length the number of points.
+	 */
+	public void addSamples(double[] xValues, double[] yValues, int offset, int length){
+		if(appendPoints(xValues, null, yValues, offset, length) > 0)
+			fireDataChange();
+	}
+	
+	/**Append a block of points with time stamps and notify the listeners once.
+	 * Like {@link #setCurrentYData(double, long)}, this enables the time stamps as x values.
+	 * @param timestamps the time stamps of the points in milliseconds.
+	 * @param yValues the y values of the points.
+	 * @param offset the position of the first point in the arrays.
+	 * @param length the number of points.
+	 */
+	public void addSamples(long[] timestamps, double[] yValues, int offset, int length){
+		xAxisDateEnabled = true;
+		if(appendPoints(null, timestamps, yValues, offset, length) > 0)
+			fireDataChange();
+	}
+	
+	/**Publish a point from any thread. Unlike {@link #addSample(ISample)}, this never waits
+	 * for the lock on the data provider, which is held while the traces are painted.
+	 * The points are queued and appended on the UI thread in one batch
+	 * with one notification, see {@link #drainQueue()}. If no trace has set the display
+	 * of the UI thread yet, the points wait for the next call of <code>drainQueue()</code>.
+	 * @param x the x value, which is the time stamp in milliseconds for a time axis.
+	 * @param y the y value.
+	 * @return false if too many points were waiting, so the point was dropped.
+	 */
+	public boolean publishSample(double x, double y){
+		if(!getSampleQueue().offer(x, y))
+			return false;
+		if(drainScheduled.compareAndSet(false, true)){
+			final Executor uiExecutor = getUIExecutor();
+			if(uiExecutor != null)
+				uiExecutor.execute(drainQueueTask);
+			else
+				drainScheduled.set(false);
+		}
+		return true;
+	}
+	
+	/**Append all points published by {@link #publishSample(double, double)}
+	 * and notify the listeners once. This is called on the UI thread after
+	 * points were published, so there is no need to call it in most cases.
+	 */
+	public void drainQueue(){
+		final SampleQueue queue = sampleQueue.get();
+		if(queue == null)
+			return;
+		int appended = 0;
+		synchronized (this) {
+			if(drainXValues == null){
+				drainXValues = new double[1024];
+				drainYValues = new double[1024];
+			}
+			int count;
+			while((count = queue.poll(drainXValues, drainYValues, 0, drainXValues.length)) > 0)
+				appended += appendPoints(drainXValues, null, drainYValues, 0, count);
+		}
+		if(appended > 0)
+			fireDataChange();
+	}
+	
+	private SampleQueue getSampleQueue(){
+		SampleQueue queue = sampleQueue.get();
+		if(queue == null){
+			sampleQueue.compareAndSet(null, new SampleQueue(QUEUE_CAPACITY));
+			queue = sampleQueue.get();
+		}
+		return queue;
+	}
+	
+	/**Set the time stamp of currrent YData
+	 * @param timestamp timestamp of Y data in milliseconds.
+	 */
+	public void setCurrentYDataTimestamp(long timestamp){
+		if(!xAxisDateEnabled){
+			clearTrace();
+			xAxisDateEnabled = true;
+		}		
+		this.currentYDataTimestamp = timestamp;
+		currentYDataTimestampChanged = true;
+		if(currentYDataChanged)
+			tryToAddDataPoint();		
+	}
+	
+	/**Set current YData and its timestamp when the new value generated.
+	 * @param currentYData the currentYData to set
+	 * @param timestamp timestamp of Y data in milliseconds.
+	 */
+	public void setCurrentYData(double newValue, long timestamp) {
+		xAxisDateEnabled = true;
+		this.currentYData = newValue;
+		currentYDataChanged = true;
+		this.currentYDataTimestamp = timestamp;
+		currentYDataTimestampChanged = true;		
+		tryToAddDataPoint();
+	}
+	
+	/**
+	 * Try to add a new data point to trace data. 
+	 * Whether it will be added or not is up to the update mode.
+	 */
+	private void tryToAddDataPoint(){
+		if(traceData.size() == traceData.getBufferSize() && plotMode == PlotMode.N_STOP)
+			return;
+		switch (updateMode) {
+		case X_OR_Y:
+			if((chronological && currentYDataChanged) ||
+					(!chronological && (currentXDataChanged || currentYDataChanged)))
+				addDataPoint();
+			break;
+		case X_AND_Y:
+			if((chronological && currentYDataChanged) ||
+					(!chronological && (currentXDataChanged && currentYDataChanged)))
+				addDataPoint();					
+			break;
+		case X:
+			if((chronological && currentYDataChanged) || 
+					(!chronological && currentXDataChanged))
+				addDataPoint();
+			break;
+		case Y:			
+			if(currentYDataChanged)
+				addDataPoint();
+			break;
+		case TRIGGER:
+
+		default:
+			break;
+		}
+	}
+
+
+	/**
+	 * add a new data point to trace data.
+	 */
+	private void addDataPoint() {	
+		double newXValue;		
+		if(!concatenate_data)
+			clearTraceData();
+		if(chronological){
+			if(xAxisDateEnabled){
+				if(updateMode != UpdateMode.TRIGGER)
+					newXValue = currentYDataTimestamp;
+				else
+					newXValue = Calendar.getInstance().getTimeInMillis();
+			}
+			else{
+				if(traceData.size() == 0)
+					newXValue = 0;
+				else
+					newXValue = traceData.getXValue(traceData.size()-1) +1;
+			}					
+		}else{
+			newXValue = currentXData;
+		}
+			appendPoint(newXValue, currentYData);
+			currentXDataChanged = false;
+			currentYDataChanged = false;
+			currentYDataTimestampChanged = false;
+			fireDataChange();			
+	}
+	
+	
+	/**
+	 * @param currentXData the currentXData to set
+	 */
+	public void setCurrentXDataArray(double[] newValue) {
+		this.currentXDataArray = newValue;
+		currentXDataArrayChanged = true;
+		tryToAddDataArray();
+	}
+	
+	/**
+	 * @param currentXData the currentXData to set
+	 */
+	public void setCurrentYDataArray(double[] newValue) {
+		this.currentYDataArray = newValue;
+		currentYDataArrayChanged = true;
+		tryToAddDataArray();
+	}
+	
+	
+	/**
+	 * Try to add a new data array to trace data. 
+	 * Whether it will be added or not is up to the update mode.
+	 */
+	private void tryToAddDataArray(){
+		if(traceData.size() == traceData.getBufferSize() && plotMode == PlotMode.N_STOP)
+			return;
+		switch (updateMode) {
+		case X_OR_Y:
+			if((chronological && currentYDataArrayChanged) ||
+					(!chronological && (currentXDataArrayChanged || currentYDataArrayChanged)))
+				addDataArray();
+			break;
+		case X_AND_Y:
+			if((chronological && currentYDataArrayChanged) ||
+					(!chronological && (currentXDataArrayChanged && currentYDataArrayChanged)))
+				addDataArray();					
+			break;
+		case X:
+			if((chronological && currentYDataArrayChanged) || 
+					(!chronological && currentXDataArrayChanged))
+				addDataArray();
+			break;
+		case Y:			
+			if(currentYDataArrayChanged)
+				addDataArray();
+			break;	
+		case TRIGGER:
+		default:
+			break;
+		}
+	}
+	
+	
+	/**
+	 * add a new data point to trace data.
+	 */
+	private void addDataArray() {	
+		if(!concatenate_data)
+			clearTraceData();
+			
+		if(chronological){	
+			final double firstXValue = traceData.size() == 0 ? 0 :
+				traceData.getXValue(traceData.size()-1) + 1;
+			for(int i=0; i<currentYDataArray.length; i++){
+				appendPoint(firstXValue + i, currentYDataArray[i]);
+			}					
+		}else{			
+			//newXValueArray = currentXDataArray;
+			
+			// if the data array size is longer than buffer size, 
+			//just ignore the tail data.
+			for(int i=0; i<Math.min(traceData.getBufferSize(),
+					Math.min(currentXDataArray.length, currentYDataArray.length)); i++){
+				appendPoint(currentXDataArray[i], currentYDataArray[i]);
+			}
+		}
+		
+			currentXDataChanged = false;
+			currentYDataChanged = false;
+			currentYDataTimestampChanged = false;
+			fireDataChange();		
+	}
+	
+
+	public void clearTrace(){
+		clearTraceData();
+		fireDataChange();
+	}
+	
+	/**
+	 * Append a sample to the trace data and keep track of the data range.
+	 */
+	private synchronized void appendSample(ISample sample){
+		traceData.add(sample);
+		dataRangeTree.add(sample);
+		minMaxPyramid.add(sample.getYValue());
+	}
+	
+	/**
+	 * Append a point without error to the trace data and keep track of the data range.
+	 */
+	private synchronized void appendPoint(double x, double y){
+		traceData.add(x, y);
+		dataRangeTree.add(x, x, y, y);
+		minMaxPyramid.add(y);
+	}
+	
+	/**
+	 * Append a block of points without errors to the trace data and keep track of the data range.
+	 * @param xValues the x values, or null to use the time stamps.
+	 * @param timestamps the time stamps, if xValues is null.
+	 * @return the number of points appended.
+	 */
+	private synchronized int appendPoints(double[] xValues, long[] timestamps, double[] yValues,
+			int offset, int length){
+		int first = offset;
+		int count = length;
+		if(plotMode == PlotMode.N_STOP)
+			count = Math.min(count, traceData.getBufferSize() - traceData.size());
+		else if(count > traceData.getBufferSize()){
+			// the older points would be replaced right away
+			first += count - traceData.getBufferSize();
+			count = traceData.getBufferSize();
+		}
+		for(int i=first; i<first+count; i++){
+			final double x = xValues != null ? xValues[i] : timestamps[i];
+			final double y = yValues[i];
+			traceData.add(x, y);
+			dataRangeTree.add(x, x, y, y);
+			minMaxPyramid.add(y);
+		}
+		return Math.max(count, 0);
+	}
+	
+	/**
+	 * Remove all samples from the trace data.
+	 */
+	private synchronized void clearTraceData(){
+		traceData.clear();
+		dataRangeTree.reset(traceData.getBufferSize());
+		minMaxPyramid.reset(traceData.getBufferSize());
+	}
+	
+	/**
+	 * @param bufferSize the bufferSize to set
+	 */
+	public synchronized void setBufferSize(int bufferSize) {
+		traceData.setBufferSize(bufferSize, false);
+		dataRangeTree.rebuild(bufferSize);
+		minMaxPyramid.rebuild(bufferSize);
+		innerUpdate();
+	}
+
+	
+	/**
+	 * @param updateMode the updateMode to set
+	 */
+	public void setUpdateMode(UpdateMode updateMode) {
+		this.updateMode = updateMode;
+	}
+	
+	/**
+	 * @return the update mode.
+	 */
+	public UpdateMode getUpdateMode() {
+		return updateMode;
+	}
+
+	/**In TRIGGER update mode, the trace data could be updated by this method 
+	 * @param triggerValue the triggerValue to set
+	 */
+	public void triggerUpdate() {
+		//do not update if no new data was added, otherwise, it will add (0,0) which is not a real sample.
+		if(traceData.size() == 0 && !(currentYDataChanged || currentYDataArrayChanged))
+			return;
+		if(currentYDataArray.length > 0)
+			addDataArray();
+		else
+			addDataPoint();
+	}
+
+	@Override
+	protected void innerUpdate() {
+		dataRangedirty = true;
+	}
+	
+	/**
+	 * Uses the {@link MinMaxPyramid} of the trace data for long ranges.
+	 */
+	@Override
+	protected void getYMinMaxIndex(int fromIndex, int toIndex, int[] result) {
+		if(toIndex - fromIndex < 2*MinMaxPyramid.BLOCK_SIZE)
+			super.getYMinMaxIndex(fromIndex, toIndex, result);
+		else
+			minMaxPyramid.getYMinMaxIndex(fromIndex, toIndex, result);
+	}
+	
+	/**{@inheritDoc}
+	 * <p>
+	 * Uses the {@link DataRangeTree} of the trace data, so only the samples
+	 * in the partially covered blocks at both ends of the range are read.
+	 */
+	@Override
+	public Range getYDataMinMax(int fromIndex, int toIndex) {
+		final double[] range = new double[4];
+		dataRangeTree.getDataRange(fromIndex, toIndex, range);
+		if(range[DataRangeTree.Y_MIN] > range[DataRangeTree.Y_MAX])
+			return null;
+		return new Range(range[DataRangeTree.Y_MIN], range[DataRangeTree.Y_MAX]);
+	}
+	
+	@Override
+    protected void updateDataRange(){
+		if(!dataRangedirty)
+			return;
+		dataRangedirty = false;
+		if(getSize() > 0){
+			dataRangeTree.getDataRange(0, getSize()-1, dataRange);
+			xDataMinMax = createRange(dataRange[DataRangeTree.X_MIN], dataRange[DataRangeTree.X_MAX]);
+			yDataMinMax = createRange(dataRange[DataRangeTree.Y_MIN], dataRange[DataRangeTree.Y_MAX]);
+		}else {
+			xDataMinMax = null;
+			yDataMinMax = null;
+		}
+	}
+	
+	/**
+	 * @return the range min...max, or NaN...NaN if there was no valid value.
+	 */
+	private static Range createRange(double min, double max){
+		if(min > max)
+			return new Range(Double.NaN, Double.NaN);
+		return new Range(min, max);
+	}
+
+	/**
+	 * @param plotMode the plotMode to set
+	 */
+	public void setPlotMode(PlotMode plotMode) {
+		this.plotMode = plotMode;
+	}
+
+	@Override
+	public int getSize() {
+		return traceData.size();
+	}
+
+	/**If xAxisDateEnable is true, you will need to use 
+	 * {@link #setCurrentYData(double, long)} or {@link #setCurrentYDataTimestamp(long)} to set the 
+	 * time stamp of ydata. This flag will be automatically enabled when
+	 * either of these two methods were called.
+	 * The default value is false.
+	 * @param xAxisDateEnabled the xAxisDateEnabled to set
+	 */
+	public void setXAxisDateEnabled(boolean xAxisDateEnabled) {
+		this.xAxisDateEnabled = xAxisDateEnabled;
+	}
+
+	public void setConcatenate_data(boolean concatenate_data) {
+		this.concatenate_data = concatenate_data;
+	}
+
+	public boolean isConcatenate_data() {
+		return concatenate_data;
+	}
+	
+
+}
@@ -2,16 +2,20 @@ package org.csstudio.swt.xygraph.dataprovider;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.csstudio.swt.xygraph.linearscale.Range;
+import org.eclipse.swt.widgets.Display;
 
 /**
  * This gives the most common implementation of the {@link IDataProvider} interface.
+ * The {@link IBulkDataProvider} and {@link IDecimatingDataProvider} methods are implemented
+ * on top of {@link #getSample(int)}.
  * 
  * @author Xihui Chen
  * @author Kay Kasemir (synchronization)
  */
-public abstract class AbstractDataProvider implements IDataProvider{
+public abstract class AbstractDataProvider implements IDecimatingDataProvider{
 
 
 	protected boolean chronological = false;
@@ -21,6 +25,20 @@ public abstract class AbstractDataProvider implements IDataProvider{
 	protected Range xDataMinMax = null;
 	protected Range yDataMinMax = null;
 	
+	protected int updateDelay = 0;
+	
+	/** Runs the notifications of the changes made on other threads on the UI thread, null until it is set */
+	private volatile Executor uiExecutor;
+	
+	/** Buffer for scanning y values in {@link #getYMinMaxIndex(int, int, int[])}, created when needed */
+	private double[] scanBuffer;
+	
+	/** Buffer for reading a single x value */
+	private final double[] xValue = new double[1];
+	
+	/** Result of {@link #getYMinMaxIndex(int, int, int[])} for {@link #getDecimatedIndices(int, int, double, double, int, int[])} */
+	private final int[] minMaxIndex = new int[3];
+	
 	/**
 	 * @param trace the trace which the data provider will provide data to.
 	 * @param chronological true if the data is sorted chronologically on xAxis, 
@@ -43,6 +61,201 @@ public abstract class AbstractDataProvider implements IDataProvider{
 	 */
 	public abstract ISample getSample(int index);
 	
+	/* (non-Javadoc)
+	 * @see org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider#getXValues(int, int, double[], int)
+	 */
+	public void getXValues(int fromIndex, int length, double[] xValues, int offset){
+		for(int i=0; i<length; i++)
+			xValues[offset + i] = getSample(fromIndex + i).getXValue();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider#getYValues(int, int, double[], int)
+	 */
+	public void getYValues(int fromIndex, int length, double[] yValues, int offset){
+		for(int i=0; i<length; i++)
+			yValues[offset + i] = getSample(fromIndex + i).getYValue();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider#getErrors(int, int, double[], double[], double[], double[], int)
+	 */
+	public void getErrors(int fromIndex, int length, double[] xPlusErrors, double[] xMinusErrors,
+			double[] yPlusErrors, double[] yMinusErrors, int offset){
+		for(int i=0; i<length; i++){
+			final ISample sample = getSample(fromIndex + i);
+			if(xPlusErrors != null)
+				xPlusErrors[offset + i] = sample.getXPlusError();
+			if(xMinusErrors != null)
+				xMinusErrors[offset + i] = sample.getXMinusError();
+			if(yPlusErrors != null)
+				yPlusErrors[offset + i] = sample.getYPlusError();
+			if(yMinusErrors != null)
+				yMinusErrors[offset + i] = sample.getYMinusError();
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider#binarySearchX(double)
+	 */
+	public int binarySearchX(double xValue){
+		int low = 0;
+		int high = getSize() - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final double midVal = getSample(mid).getXValue();
+			if (midVal < xValue)
+				low = mid + 1;
+			else if (midVal > xValue)
+				high = mid - 1;
+			else
+				return mid; // key found
+		}
+		return -(low + 1);  // key not found.
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider#getYDataMinMax(int, int)
+	 */
+	public Range getYDataMinMax(int fromIndex, int toIndex){
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		for(int i=fromIndex; i<=toIndex; i++){
+			final ISample sample = getSample(i);
+			final double low = sample.getYValue() - sample.getYMinusError();
+			final double high = sample.getYValue() + sample.getYPlusError();
+			if(low < min)
+				min = low;
+			if(high > max)
+				max = high;
+		}
+		if(min > max)
+			return null;
+		return new Range(min, max);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.csstudio.swt.xygraph.dataprovider.IDecimatingDataProvider#getDecimatedIndices(int, int, double, double, int, int[])
+	 */
+	public int getDecimatedIndices(int fromIndex, int toIndex, double xMin, double xMax,
+			int columns, int[] indices){
+		if(!isChronological() || !(xMax > xMin) || columns <= 0)
+			return -1;
+		final double scale = columns / (xMax - xMin);
+		int count = 0;
+		int start = fromIndex;
+		while(start <= toIndex){
+			final int column = getColumn(getXValue(start), xMin, scale, columns);
+			// gallop to the first sample of the next column, then search it in the last step
+			int low = start;
+			int step = 1;
+			while(low + step <= toIndex &&
+					getColumn(getXValue(low + step), xMin, scale, columns) == column){
+				low += step;
+				step <<= 1;
+			}
+			int high = Math.min(low + step, toIndex + 1);
+			while(high - low > 1){
+				final int mid = (low + high) >>> 1;
+				if(getColumn(getXValue(mid), xMin, scale, columns) == column)
+					low = mid;
+				else
+					high = mid;
+			}
+			final int end = low;
+			if(end - start < 4){
+				if(count + end - start + 1 > indices.length)
+					return -1;
+				for(int i=start; i<=end; i++)
+					indices[count++] = i;
+			}else {
+				getYMinMaxIndex(start, end, minMaxIndex);
+				final int nanCount = minMaxIndex[2];
+				if(nanCount == end - start + 1){
+					// nothing but NaN: only markers, which are all in the same place
+					if(count + 2 > indices.length)
+						return -1;
+					indices[count++] = start;
+					indices[count++] = end;
+				}else if(nanCount > 0){
+					if(count + end - start + 1 > indices.length)
+						return -1;
+					for(int i=start; i<=end; i++)
+						indices[count++] = i;
+				}else {
+					if(count + 4 > indices.length)
+						return -1;
+					final int first = Math.min(minMaxIndex[0], minMaxIndex[1]);
+					final int second = Math.max(minMaxIndex[0], minMaxIndex[1]);
+					indices[count++] = start;
+					if(first != start)
+						indices[count++] = first;
+					if(second != first && second != end)
+						indices[count++] = second;
+					if(first != end)
+						indices[count++] = end;
+				}
+			}
+			start = end + 1;
+		}
+		return count;
+	}
+	
+	/**Find the samples with the lowest and the highest y value in a range of samples.
+	 * This implementation reads all y values in the range. Data providers which keep
+	 * an index of their y values should override it.
+	 * @param fromIndex index of the first sample.
+	 * @param toIndex index of the last sample.
+	 * @param result array for the index of the lowest y value, the index of the highest y value
+	 * and the number of NaN values. The indices are -1 if there are only NaN values.
+	 */
+	protected void getYMinMaxIndex(int fromIndex, int toIndex, int[] result){
+		if(scanBuffer == null)
+			scanBuffer = new double[256];
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		result[0] = -1;
+		result[1] = -1;
+		result[2] = 0;
+		for(int chunk = fromIndex; chunk <= toIndex; chunk += scanBuffer.length){
+			final int length = Math.min(scanBuffer.length, toIndex - chunk + 1);
+			getYValues(chunk, length, scanBuffer, 0);
+			for(int i=0; i<length; i++){
+				final double y = scanBuffer[i];
+				if(Double.isNaN(y))
+					result[2]++;
+				else{
+					if(y < min){
+						min = y;
+						result[0] = chunk + i;
+					}
+					if(y > max){
+						max = y;
+						result[1] = chunk + i;
+					}
+				}
+			}
+		}
+	}
+	
+	private double getXValue(int index){
+		getXValues(index, 1, xValue, 0);
+		return xValue[0];
+	}
+	
+	/**
+	 * @return the column of a x value for {@link #getDecimatedIndices(int, int, double, double, int, int[])},
+	 * -1 left of the first column and <code>columns</code> right of the last column.
+	 */
+	private static int getColumn(double x, double xMin, double scale, int columns){
+		final double column = Math.floor((x - xMin) * scale);
+		if(column < 0)
+			return -1;
+		if(column >= columns)
+			return columns;
+		return (int) column;
+	}
+	
 	/**
 	 * the update needed when {@link #fireDataChange()} was called.
 	 */
@@ -103,6 +316,52 @@ public abstract class AbstractDataProvider implements IDataProvider{
 		return listeners.remove(listener);
 	}
 	
+	/**
+	 * @param updateDelay Delay in milliseconds between plot updates. This may help to reduce CPU
+	 * usage. The default value is 0ms. The XY Graph waits this long after a data change
+	 * before it refreshes the traces of this data provider.
+	 */
+	public void setUpdateDelay(int updateDelay) {
+		this.updateDelay = updateDelay;
+	}
+	
+	/**
+	 * @return the delay in milliseconds between plot updates.
+	 */
+	public int getUpdateDelay() {
+		return updateDelay;
+	}
+	
+	/**Set the display of the XY Graph which shows the data. The changes made on other
+	 * threads are announced on its UI thread. A trace sets it when the data provider
+	 * is attached to the trace on the UI thread.
+	 * @param display the display of the UI thread.
+	 */
+	public void setDisplay(final Display display) {
+		setUIExecutor(new Executor(){
+			public void execute(Runnable command) {
+				if(!display.isDisposed())
+					display.asyncExec(command);
+			}
+		});
+	}
+	
+	/**Set how the changes made on other threads are announced on the UI thread,
+	 * if it is not the asyncExec of a display, see {@link #setDisplay(Display)}.
+	 * @param uiExecutor runs a task on the UI thread.
+	 */
+	public void setUIExecutor(final Executor uiExecutor) {
+		this.uiExecutor = uiExecutor;
+	}
+	
+	/**
+	 * @return the executor which runs tasks on the UI thread,
+	 * or null if no display has been set yet.
+	 */
+	protected Executor getUIExecutor(){
+		return uiExecutor;
+	}
+	
 	protected void fireDataChange(){
 		innerUpdate();
 		for(IDataProviderListener listener : listeners){
@@ -0,0 +1,426 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.Arrays;
+
+/**A circular buffer of samples which stores every field of the samples in its own
+ * primitive column instead of keeping one {@link ISample} object per point.
+ * New arrived data will be appended to the tail of the buffer.
+ * When buffer is full, the oldest data will be deleted when new data arrived.
+ * <p>
+ * Only the x and y columns are always allocated, so a point costs 16 bytes.
+ * The error columns and the info column are allocated the first time a sample
+ * with a non zero error or a non empty info text is added.
+ * Adding a sample does not allocate anything.
+ * <p>
+ * The samples can be read by index through the primitive getters or
+ * through a {@link SampleView}, which is a reusable {@link ISample} on top of
+ * the columns.
+ */
+public class ColumnarCircularBuffer implements SampleBuffer {
+	private int bufferSize = 0;
+	private double[] xValues;
+	private double[] yValues;
+	private double[] yPlusErrors;
+	private double[] yMinusErrors;
+	private double[] xPlusErrors;
+	private double[] xMinusErrors;
+	private String[] infos;
+	private int head;
+	private int tail;
+	private int count;
+
+	public ColumnarCircularBuffer(int bufferSize) {
+		setBufferSize(bufferSize, true);
+	}
+
+	/**Add a point without error and info.
+	 * @param x the x value
+	 * @param y the y value
+	 */
+	public synchronized void add(double x, double y){
+		final int slot = nextSlot();
+		xValues[slot] = x;
+		yValues[slot] = y;
+		if(yPlusErrors != null){
+			yPlusErrors[slot] = 0;
+			yMinusErrors[slot] = 0;
+			xPlusErrors[slot] = 0;
+			xMinusErrors[slot] = 0;
+		}
+		if(infos != null)
+			infos[slot] = null;
+	}
+
+	/**Add a point with error ranges and info text.
+	 * @param x
+	 * @param y
+	 * @param yPlusError
+	 * @param yMinusError
+	 * @param xPlusError
+	 * @param xMinusError
+	 * @param info
+	 */
+	public synchronized void add(double x, double y,
+			double yPlusError, double yMinusError,
+			double xPlusError, double xMinusError, String info){
+		if(yPlusErrors == null && (yPlusError != 0 || yMinusError != 0
+				|| xPlusError != 0 || xMinusError != 0)){
+			yPlusErrors = new double[bufferSize];
+			yMinusErrors = new double[bufferSize];
+			xPlusErrors = new double[bufferSize];
+			xMinusErrors = new double[bufferSize];
+		}
+		if(infos == null && info != null && info.length() > 0)
+			infos = new String[bufferSize];
+		final int slot = nextSlot();
+		xValues[slot] = x;
+		yValues[slot] = y;
+		if(yPlusErrors != null){
+			yPlusErrors[slot] = yPlusError;
+			yMinusErrors[slot] = yMinusError;
+			xPlusErrors[slot] = xPlusError;
+			xMinusErrors[slot] = xMinusError;
+		}
+		if(infos != null)
+			infos[slot] = info;
+	}
+
+	/**Add a sample. Its values are copied into the columns.
+	 * @param sample
+	 */
+	public void add(ISample sample){
+		add(sample.getXValue(), sample.getYValue(),
+				sample.getYPlusError(), sample.getYMinusError(),
+				sample.getXPlusError(), sample.getXMinusError(), sample.getInfo());
+	}
+
+	/**
+	 * @return the slot for the next element, dropping the head element if the buffer is full.
+	 */
+	private int nextSlot(){
+		final int slot = tail;
+		if(count == bufferSize) //buffer is full
+			head = (head + 1) % bufferSize;
+		else
+			count++;
+		tail = (tail + 1) % bufferSize;
+		return slot;
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the slot in the columns which holds the element.
+	 */
+	private int slot(int index){
+		return (head + index) % bufferSize;
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the x value of the element.
+	 */
+	public double getXValue(int index){
+		return xValues[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the y value of the element.
+	 */
+	public double getYValue(int index){
+		return yValues[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the plus error on y value of the element.
+	 */
+	public double getYPlusError(int index){
+		return yPlusErrors == null ? 0 : yPlusErrors[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the minus error on y value of the element.
+	 */
+	public double getYMinusError(int index){
+		return yMinusErrors == null ? 0 : yMinusErrors[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the plus error on x value of the element.
+	 */
+	public double getXPlusError(int index){
+		return xPlusErrors == null ? 0 : xPlusErrors[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the minus error on x value of the element.
+	 */
+	public double getXMinusError(int index){
+		return xMinusErrors == null ? 0 : xMinusErrors[slot(index)];
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return the info text of the element.
+	 */
+	public String getInfo(int index){
+		if(infos == null)
+			return ""; //$NON-NLS-1$
+		final String info = infos[slot(index)];
+		return info == null ? "" : info; //$NON-NLS-1$
+	}
+
+	/**
+	 * @param index the index of the element in the buffer.
+	 * @return a copy of the element, which keeps its values when the buffer changes.
+	 */
+	public synchronized Sample getSample(int index){
+		return new Sample(getXValue(index), getYValue(index),
+				getYPlusError(index), getYMinusError(index),
+				getXPlusError(index), getXMinusError(index), getInfo(index));
+	}
+
+	/**Copy the x values of a range of elements.
+	 * @param fromIndex the index of the first element in the buffer.
+	 * @param length number of elements to copy.
+	 * @param dest the array to copy the values into.
+	 * @param destOffset the position in dest for the first element.
+	 */
+	public void copyXValues(int fromIndex, int length, double[] dest, int destOffset){
+		copyColumnRange(xValues, fromIndex, length, dest, destOffset);
+	}
+
+	/**Copy the y values of a range of elements.
+	 * @param fromIndex the index of the first element in the buffer.
+	 * @param length number of elements to copy.
+	 * @param dest the array to copy the values into.
+	 * @param destOffset the position in dest for the first element.
+	 */
+	public void copyYValues(int fromIndex, int length, double[] dest, int destOffset){
+		copyColumnRange(yValues, fromIndex, length, dest, destOffset);
+	}
+
+	/**Copy the errors of a range of elements. The errors are 0 if no element has errors.
+	 * @param fromIndex the index of the first element in the buffer.
+	 * @param length number of elements to copy.
+	 * @param xPlusDest the array to copy the plus errors on x values into, or null.
+	 * @param xMinusDest the array to copy the minus errors on x values into, or null.
+	 * @param yPlusDest the array to copy the plus errors on y values into, or null.
+	 * @param yMinusDest the array to copy the minus errors on y values into, or null.
+	 * @param destOffset the position in the arrays for the first element.
+	 */
+	public void copyErrors(int fromIndex, int length, double[] xPlusDest, double[] xMinusDest,
+			double[] yPlusDest, double[] yMinusDest, int destOffset){
+		copyErrorRange(xPlusErrors, fromIndex, length, xPlusDest, destOffset);
+		copyErrorRange(xMinusErrors, fromIndex, length, xMinusDest, destOffset);
+		copyErrorRange(yPlusErrors, fromIndex, length, yPlusDest, destOffset);
+		copyErrorRange(yMinusErrors, fromIndex, length, yMinusDest, destOffset);
+	}
+
+	private void copyErrorRange(double[] column, int fromIndex, int length,
+			double[] dest, int destOffset){
+		if(dest == null)
+			return;
+		if(column == null)
+			Arrays.fill(dest, destOffset, destOffset + length, 0);
+		else
+			copyColumnRange(column, fromIndex, length, dest, destOffset);
+	}
+
+	/**Copy a range of elements out of a column with at most two array copies,
+	 * since the range might wrap around the end of the column.
+	 */
+	private void copyColumnRange(double[] column, int fromIndex, int length,
+			double[] dest, int destOffset){
+		final int start = slot(fromIndex);
+		final int firstPart = Math.min(length, bufferSize - start);
+		System.arraycopy(column, start, dest, destOffset, firstPart);
+		if(firstPart < length)
+			System.arraycopy(column, 0, dest, destOffset + firstPart, length - firstPart);
+	}
+
+	/**Search a x value with the binary search algorithm.
+	 * The x values must be sorted in ascending order.
+	 * @param xValue the x value to search.
+	 * @return index of an element with this x value, if there is one;
+	 * otherwise <code>(-(insertion point) - 1)</code>.
+	 */
+	public int binarySearchX(double xValue){
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final double midVal = xValues[slot(mid)];
+			if (midVal < xValue)
+				low = mid + 1;
+			else if (midVal > xValue)
+				high = mid - 1;
+			else
+				return mid; // key found
+		}
+		return -(low + 1);  // key not found.
+	}
+
+	/**
+	 * @return true if any sample with error has been added since the error columns
+	 * were allocated.
+	 */
+	public boolean hasErrors(){
+		return yPlusErrors != null;
+	}
+
+	/**
+	 * clear the buffer. The allocated columns are kept.
+	 */
+	public synchronized void clear(){
+		head = 0;
+		tail = 0;
+		count = 0;
+	}
+
+	/**Set the buffer size.
+	 * @param bufferSize the bufferSize to set
+	 * @param clear clear the buffer if true. Otherwise keep the exist data;
+	 * Extra data on the end would be omitted if the new bufferSize is less
+	 * than the exist data count.
+	 */
+	public synchronized void setBufferSize(int bufferSize, boolean clear) {
+		assert bufferSize > 0;
+		if(this.bufferSize == bufferSize)
+			return;
+		if(clear){
+			xValues = new double[bufferSize];
+			yValues = new double[bufferSize];
+			yPlusErrors = null;
+			yMinusErrors = null;
+			xPlusErrors = null;
+			xMinusErrors = null;
+			infos = null;
+			this.bufferSize = bufferSize;
+			clear();
+		}else{// keep the exist data
+			final int newCount = Math.min(bufferSize, count);
+			xValues = copyColumn(xValues, bufferSize, newCount);
+			yValues = copyColumn(yValues, bufferSize, newCount);
+			yPlusErrors = copyColumn(yPlusErrors, bufferSize, newCount);
+			yMinusErrors = copyColumn(yMinusErrors, bufferSize, newCount);
+			xPlusErrors = copyColumn(xPlusErrors, bufferSize, newCount);
+			xMinusErrors = copyColumn(xMinusErrors, bufferSize, newCount);
+			if(infos != null){
+				final String[] newInfos = new String[bufferSize];
+				for(int i=0; i<newCount; i++)
+					newInfos[i] = infos[slot(i)];
+				infos = newInfos;
+			}
+			this.bufferSize = bufferSize;
+			count = newCount;
+			head = 0;
+			tail = count % bufferSize;
+		}
+	}
+
+	/**Copy the first elements of a column into a new column starting at slot 0.
+	 * @param column the column to copy. May be null.
+	 * @param newSize size of the new column
+	 * @param newCount number of elements to copy
+	 * @return the new column, or null if column is null.
+	 */
+	private double[] copyColumn(double[] column, int newSize, int newCount){
+		if(column == null)
+			return null;
+		final double[] newColumn = new double[newSize];
+		for(int i=0; i<newCount; i++)
+			newColumn[i] = column[slot(i)];
+		return newColumn;
+	}
+
+	/**
+	 * @return the bufferSize
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return the number of elements in the buffer.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return a new view which is not positioned on any element yet.
+	 * @see SampleView#setIndex(int)
+	 */
+	public SampleView createView(){
+		return new SampleView();
+	}
+
+	/**A reusable {@link ISample} on top of the columns of the buffer.
+	 * The view is bound to the storage slot of an element, so it keeps showing the
+	 * same sample until that sample is overwritten by new data, the buffer is
+	 * cleared or its size is changed.
+	 * Reposition the view with {@link #setIndex(int)} to read
+	 * many samples without creating any object.
+	 * <p>
+	 * Since the values of a view change, views only equal themselves.
+	 * Use {@link ColumnarCircularBuffer#getSample(int)} for a sample which
+	 * equals other samples with the same x/y value.
+	 */
+	public class SampleView implements ISample {
+		private int slot;
+
+		private SampleView() {
+		}
+
+		/**Position the view on an element.
+		 * @param index the index of the element in the buffer.
+		 * @return this view.
+		 */
+		public SampleView setIndex(int index){
+			slot = slot(index);
+			return this;
+		}
+
+		public double getXValue() {
+			return xValues[slot];
+		}
+
+		public double getYValue() {
+			return yValues[slot];
+		}
+
+		public double getXPlusError() {
+			return xPlusErrors == null ? 0 : xPlusErrors[slot];
+		}
+
+		public double getYPlusError() {
+			return yPlusErrors == null ? 0 : yPlusErrors[slot];
+		}
+
+		public double getXMinusError() {
+			return xMinusErrors == null ? 0 : xMinusErrors[slot];
+		}
+
+		public double getYMinusError() {
+			return yMinusErrors == null ? 0 : yMinusErrors[slot];
+		}
+
+		public String getInfo() {
+			if(infos == null || infos[slot] == null)
+				return ""; //$NON-NLS-1$
+			return infos[slot];
+		}
+
+		/** @return String representation, mostly for debugging */
+		@SuppressWarnings("nls")
+		@Override
+		public String toString() {
+			return "(" + getXValue() + ", " + getYValue() + ")";
+		}
+	}
+}
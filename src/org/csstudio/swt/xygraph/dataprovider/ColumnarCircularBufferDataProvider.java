@@ -0,0 +1,103 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.Iterator;
+
+
+/**
+ * Provides data to a trace like {@link CircularBufferDataProvider},
+ * but keeps the data in a {@link ColumnarCircularBuffer} of primitive columns
+ * instead of one {@link Sample} object per point.
+ * This is the data provider of choice for traces with a large buffer,
+ * like strip charts with up to millions of points.
+ * <p>
+ * The samples returned by {@link #getSample(int)} are copies, like the samples of
+ * {@link CircularBufferDataProvider} they keep their values when the buffer wraps around.
+ * Use {@link #getSample(int, ColumnarCircularBuffer.SampleView)}
+ * to read samples without creating any object.
+ */
+public class ColumnarCircularBufferDataProvider extends AbstractCircularBufferDataProvider{
+
+	private final ColumnarCircularBuffer traceData;
+
+	public ColumnarCircularBufferDataProvider(boolean chronological) {
+		this(chronological, new ColumnarCircularBuffer(100));
+	}
+
+	private ColumnarCircularBufferDataProvider(boolean chronological, ColumnarCircularBuffer traceData) {
+		super(chronological, traceData);
+		this.traceData = traceData;
+	}
+
+	/**The iterator returns the same {@link ColumnarCircularBuffer.SampleView}
+	 * on every call of <code>next()</code>, positioned on the next sample.
+	 * @return an iterator over the samples.
+	 */
+	public Iterator<ISample> iterator() {
+		return new Iterator<ISample>(){
+			private int index = 0;
+			private final ColumnarCircularBuffer.SampleView view = traceData.createView();
+
+			public boolean hasNext() {
+				return index < traceData.size();
+			}
+			public ISample next() {
+				return view.setIndex(index++);
+			}
+			public void remove() {}
+		};
+	}
+
+	/**{@inheritDoc}
+	 * <p>
+	 * Each call creates a copy of the sample.
+	 * Use {@link #getSample(int, ColumnarCircularBuffer.SampleView)} to avoid that.
+	 */
+	@Override
+	public ISample getSample(int index) {
+		if(index >= traceData.size())
+			return null;
+		return traceData.getSample(index);
+	}
+
+	@Override
+	public void getXValues(int fromIndex, int length, double[] xValues, int offset) {
+		traceData.copyXValues(fromIndex, length, xValues, offset);
+	}
+
+	@Override
+	public void getYValues(int fromIndex, int length, double[] yValues, int offset) {
+		traceData.copyYValues(fromIndex, length, yValues, offset);
+	}
+
+	@Override
+	public void getErrors(int fromIndex, int length, double[] xPlusErrors, double[] xMinusErrors,
+			double[] yPlusErrors, double[] yMinusErrors, int offset) {
+		traceData.copyErrors(fromIndex, length, xPlusErrors, xMinusErrors,
+				yPlusErrors, yMinusErrors, offset);
+	}
+
+	@Override
+	public int binarySearchX(double xValue) {
+		return traceData.binarySearchX(xValue);
+	}
+
+	/**Get sample by index without creating any object.
+	 * The view shows the new data once the buffer has wrapped around
+	 * and overwritten the sample.
+	 * @param index Sample index, 0...<code>getSize()-1</code>
+	 * @param view the view to position on the sample,
+	 * as returned by {@link #createSampleView()}.
+	 * @return the view, positioned on the sample.
+	 */
+	public ColumnarCircularBuffer.SampleView getSample(int index, ColumnarCircularBuffer.SampleView view) {
+		return view.setIndex(index);
+	}
+
+	/**
+	 * @return a new reusable view on the samples of this data provider.
+	 * @see #getSample(int, ColumnarCircularBuffer.SampleView)
+	 */
+	public ColumnarCircularBuffer.SampleView createSampleView() {
+		return traceData.createView();
+	}
+}
@@ -0,0 +1,249 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.Arrays;
+
+/**Keeps track of the minimum and maximum of the x and y data in a data provider
+ * which is filled like a circular buffer: new samples are appended to the tail,
+ * and once there are <code>capacity</code> samples, every new sample replaces the head.
+ * The error ranges of the samples are included, like in
+ * {@link IDataProvider#getXDataMinMax()}. NaN values are ignored.
+ * <p>
+ * The samples are grouped in blocks of {@link #BLOCK_SIZE} in the order they were added.
+ * The minimum and maximum of each block are stored in a segment tree,
+ * so adding a sample costs O(log(capacity/BLOCK_SIZE)) and the data range of any
+ * range of samples costs O(BLOCK_SIZE + log(capacity/BLOCK_SIZE)),
+ * because only the samples in the partially covered blocks at both ends
+ * have to be read from the data provider.
+ * The memory used is only 4 doubles per block.
+ * <p>
+ * The owner has to call {@link #add(ISample)} for every sample appended to the data,
+ * and {@link #rebuild(int)} whenever the data is changed in any other way.
+ */
+public class DataRangeTree {
+
+	/** Number of samples in a block */
+	public static final int BLOCK_SIZE = 64;
+
+	/** Index of the lowest x value in a range array */
+	public static final int X_MIN = 0;
+	/** Index of the highest x value in a range array */
+	public static final int X_MAX = 1;
+	/** Index of the lowest y value in a range array */
+	public static final int Y_MIN = 2;
+	/** Index of the highest y value in a range array */
+	public static final int Y_MAX = 3;
+
+	private final IBulkDataProvider data;
+
+	private int capacity;
+
+	/** Number of blocks in the tree, enough for all samples of a full buffer */
+	private int blockCount;
+
+	/** Segment trees over the blocks: node i has the children 2i and 2i+1,
+	 *  block b is stored in the leaf <code>blockCount + b % blockCount</code>
+	 */
+	private double[] xMin, xMax, yMin, yMax;
+
+	/** Number of samples added since the last reset, which is the sequence number of the next sample */
+	private long added;
+
+	/** Buffers for reading the samples of a block */
+	private final double[] xValues = new double[BLOCK_SIZE], yValues = new double[BLOCK_SIZE];
+	private final double[] xPlusErrors = new double[BLOCK_SIZE], xMinusErrors = new double[BLOCK_SIZE];
+	private final double[] yPlusErrors = new double[BLOCK_SIZE], yMinusErrors = new double[BLOCK_SIZE];
+
+	/**
+	 * @param data the data provider which holds the samples. Its values are read
+	 * when a range starts or ends inside of a block, and when the tree is rebuilt.
+	 * @param capacity the maximum number of samples in the data provider.
+	 */
+	public DataRangeTree(final IBulkDataProvider data, final int capacity) {
+		this.data = data;
+		reset(capacity);
+	}
+
+	/**Forget all samples.
+	 * @param capacity the maximum number of samples in the data provider.
+	 */
+	public void reset(final int capacity) {
+		this.capacity = capacity;
+		blockCount = capacity / BLOCK_SIZE + 2;
+		xMin = new double[2*blockCount];
+		xMax = new double[2*blockCount];
+		yMin = new double[2*blockCount];
+		yMax = new double[2*blockCount];
+		Arrays.fill(xMin, Double.POSITIVE_INFINITY);
+		Arrays.fill(xMax, Double.NEGATIVE_INFINITY);
+		Arrays.fill(yMin, Double.POSITIVE_INFINITY);
+		Arrays.fill(yMax, Double.NEGATIVE_INFINITY);
+		added = 0;
+	}
+
+	/**Read all samples from the data provider again.
+	 * @param capacity the maximum number of samples in the data provider.
+	 */
+	public void rebuild(final int capacity) {
+		reset(capacity);
+		final int size = data.getSize();
+		for(int i=0; i<size; i+=BLOCK_SIZE){
+			final int length = Math.min(BLOCK_SIZE, size - i);
+			read(i, length);
+			for(int j=0; j<length; j++)
+				add(xValues[j] - xMinusErrors[j], xValues[j] + xPlusErrors[j],
+					yValues[j] - yMinusErrors[j], yValues[j] + yPlusErrors[j]);
+		}
+	}
+
+	/**Add a sample which was appended to the tail of the data.
+	 * @param sample the new sample.
+	 */
+	public void add(final ISample sample) {
+		add(sample.getXValue() - sample.getXMinusError(), sample.getXValue() + sample.getXPlusError(),
+			sample.getYValue() - sample.getYMinusError(), sample.getYValue() + sample.getYPlusError());
+	}
+
+	/**Add a sample which was appended to the tail of the data.
+	 * @param xLow x value minus its error
+	 * @param xHigh x value plus its error
+	 * @param yLow y value minus its error
+	 * @param yHigh y value plus its error
+	 */
+	public void add(final double xLow, final double xHigh, final double yLow, final double yHigh) {
+		final long sequence = added++;
+		final int node = blockCount + (int)((sequence / BLOCK_SIZE) % blockCount);
+		if(sequence % BLOCK_SIZE == 0){ // first sample of a block replaces an old block
+			xMin[node] = Double.POSITIVE_INFINITY;
+			xMax[node] = Double.NEGATIVE_INFINITY;
+			yMin[node] = Double.POSITIVE_INFINITY;
+			yMax[node] = Double.NEGATIVE_INFINITY;
+		}
+		if(xLow < xMin[node])
+			xMin[node] = xLow;
+		if(xHigh > xMax[node])
+			xMax[node] = xHigh;
+		if(yLow < yMin[node])
+			yMin[node] = yLow;
+		if(yHigh > yMax[node])
+			yMax[node] = yHigh;
+		for(int i = node >> 1; i >= 1; i >>= 1){
+			xMin[i] = min(xMin[2*i], xMin[2*i+1]);
+			xMax[i] = max(xMax[2*i], xMax[2*i+1]);
+			yMin[i] = min(yMin[2*i], yMin[2*i+1]);
+			yMax[i] = max(yMax[2*i], yMax[2*i+1]);
+		}
+	}
+
+	/**
+	 * @return the number of samples in the data, according to the added samples.
+	 */
+	public int size() {
+		return (int) Math.min(added, capacity);
+	}
+
+	/**Get the data range of a range of samples.
+	 * @param fromIndex index of the first sample, 0...<code>size()-1</code>
+	 * @param toIndex index of the last sample, <code>fromIndex</code>...<code>size()-1</code>
+	 * @param range array of at least 4 elements for the result, which is stored at
+	 * {@link #X_MIN}, {@link #X_MAX}, {@link #Y_MIN} and {@link #Y_MAX}.
+	 * A minimum is positive infinity and a maximum is negative infinity
+	 * if there is no value other than NaN.
+	 */
+	public void getDataRange(final int fromIndex, final int toIndex, final double[] range) {
+		range[X_MIN] = Double.POSITIVE_INFINITY;
+		range[X_MAX] = Double.NEGATIVE_INFINITY;
+		range[Y_MIN] = Double.POSITIVE_INFINITY;
+		range[Y_MAX] = Double.NEGATIVE_INFINITY;
+		if(fromIndex > toIndex)
+			return;
+		final long head = added - size();
+		final long first = head + fromIndex;
+		final long last = head + toIndex;
+		final long firstBlock = first / BLOCK_SIZE;
+		final long lastBlock = last / BLOCK_SIZE;
+		if(firstBlock == lastBlock){
+			scan(first, last, head, range);
+			return;
+		}
+		// Blocks at both ends are only read from the tree when fully covered
+		long lowBlock = firstBlock;
+		if(first % BLOCK_SIZE != 0){
+			scan(first, (firstBlock+1)*BLOCK_SIZE - 1, head, range);
+			lowBlock++;
+		}
+		long highBlock = lastBlock;
+		if(last != added - 1 && (last+1) % BLOCK_SIZE != 0){
+			scan(lastBlock*BLOCK_SIZE, last, head, range);
+			highBlock--;
+		}
+		if(lowBlock > highBlock)
+			return;
+		final int lowSlot = (int)(lowBlock % blockCount);
+		final int highSlot = (int)(highBlock % blockCount);
+		if(lowSlot <= highSlot)
+			query(lowSlot, highSlot, range);
+		else{
+			query(lowSlot, blockCount-1, range);
+			query(0, highSlot, range);
+		}
+	}
+
+	/**Include the samples with sequence number first...last in the range,
+	 * which are in the same block.
+	 * @param head sequence number of the sample at index 0
+	 */
+	private void scan(final long first, final long last, final long head, final double[] range) {
+		final int length = (int)(last - first + 1);
+		read((int)(first - head), length);
+		for(int i=0; i<length; i++)
+			include(xValues[i] - xMinusErrors[i], xValues[i] + xPlusErrors[i],
+					yValues[i] - yMinusErrors[i], yValues[i] + yPlusErrors[i], range);
+	}
+
+	/** Read the values of at most {@link #BLOCK_SIZE} samples into the buffers */
+	private void read(final int fromIndex, final int length) {
+		data.getXValues(fromIndex, length, xValues, 0);
+		data.getYValues(fromIndex, length, yValues, 0);
+		data.getErrors(fromIndex, length, xPlusErrors, xMinusErrors, yPlusErrors, yMinusErrors, 0);
+	}
+
+	/**Include the blocks in the slots lowSlot...highSlot in the range.*/
+	private void query(final int lowSlot, final int highSlot, final double[] range) {
+		int low = lowSlot + blockCount;
+		int high = highSlot + blockCount + 1;
+		while(low < high){
+			if((low & 1) == 1){
+				include(xMin[low], xMax[low], yMin[low], yMax[low], range);
+				low++;
+			}
+			if((high & 1) == 1){
+				high--;
+				include(xMin[high], xMax[high], yMin[high], yMax[high], range);
+			}
+			low >>= 1;
+			high >>= 1;
+		}
+	}
+
+	private static void include(final double xLow, final double xHigh,
+			final double yLow, final double yHigh, final double[] range) {
+		if(xLow < range[X_MIN])
+			range[X_MIN] = xLow;
+		if(xHigh > range[X_MAX])
+			range[X_MAX] = xHigh;
+		if(yLow < range[Y_MIN])
+			range[Y_MIN] = yLow;
+		if(yHigh > range[Y_MAX])
+			range[Y_MAX] = yHigh;
+	}
+
+	/** Like Math.min, but without NaN handling since the tree never contains NaN */
+	private static double min(final double a, final double b) {
+		return a < b ? a : b;
+	}
+
+	/** Like Math.max, but without NaN handling since the tree never contains NaN */
+	private static double max(final double a, final double b) {
+		return a > b ? a : b;
+	}
+}
@@ -0,0 +1,20 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.List;
+
+/**
+ * A source of archived samples for the {@link PagedArchiveDataProvider},
+ * like a file or a database.
+ */
+public interface IArchiveSource {
+
+	/**Read the samples in a range of x values.
+	 * This is called on a background thread, never on the UI thread.
+	 * @param start the lowest x value of the range.
+	 * @param end the end of the range, which is not included.
+	 * @return the samples with <code>start &lt;= x &lt; end</code>, sorted by x.
+	 * @throws Exception if the samples cannot be read.
+	 */
+	public List<ISample> getSamples(double start, double end) throws Exception;
+
+}
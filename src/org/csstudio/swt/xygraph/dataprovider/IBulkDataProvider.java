@@ -0,0 +1,69 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import org.csstudio.swt.xygraph.linearscale.Range;
+
+/**
+ * Optional extension of {@link IDataProvider} for reading the values of many samples
+ * at once into primitive arrays.
+ * <p>
+ * {@link IDataProvider#getSample(int)} has to return an object for every
+ * sample, which is a lot of calls and possibly objects when a trace has hundreds of
+ * thousands of points. The XY Graph therefore uses this interface whenever the data
+ * provider implements it. {@link AbstractDataProvider} implements it on top of
+ * <code>getSample()</code>, so data providers which store their data in primitive
+ * arrays only need to override the methods to copy the arrays directly.
+ * <p>
+ * <b>Synchronization</b><br>
+ * Like <code>getSample()</code>, these methods should be called while
+ * <code>synchronized</code> on the data provider.
+ */
+public interface IBulkDataProvider extends IDataProvider {
+
+	/**Copy the x values of a range of samples.
+	 * @param fromIndex index of the first sample, 0...<code>getSize()-1</code>
+	 * @param length number of samples to copy.
+	 * @param xValues the array to copy the x values into.
+	 * @param offset the position in <code>xValues</code> for the first sample.
+	 */
+	public void getXValues(int fromIndex, int length, double[] xValues, int offset);
+
+	/**Copy the y values of a range of samples.
+	 * @param fromIndex index of the first sample, 0...<code>getSize()-1</code>
+	 * @param length number of samples to copy.
+	 * @param yValues the array to copy the y values into.
+	 * @param offset the position in <code>yValues</code> for the first sample.
+	 */
+	public void getYValues(int fromIndex, int length, double[] yValues, int offset);
+
+	/**Copy the errors of a range of samples, like {@link ISample#getXPlusError()}.
+	 * @param fromIndex index of the first sample, 0...<code>getSize()-1</code>
+	 * @param length number of samples to copy.
+	 * @param xPlusErrors the array to copy the plus errors on x values into, or null.
+	 * @param xMinusErrors the array to copy the minus errors on x values into, or null.
+	 * @param yPlusErrors the array to copy the plus errors on y values into, or null.
+	 * @param yMinusErrors the array to copy the minus errors on y values into, or null.
+	 * @param offset the position in the arrays for the first sample.
+	 */
+	public void getErrors(int fromIndex, int length, double[] xPlusErrors, double[] xMinusErrors,
+			double[] yPlusErrors, double[] yMinusErrors, int offset);
+
+	/**Search a x value with the binary search algorithm.
+	 * The result is only defined if the data is chronological.
+	 * @param xValue the x value to search.
+	 * @return index of a sample with this x value, if there is one;
+	 * otherwise <code>(-(insertion point) - 1)</code>, like
+	 * {@link java.util.Arrays#binarySearch(double[], double)}.
+	 * @see #isChronological()
+	 */
+	public int binarySearchX(double xValue);
+
+	/**Get the minimum and maximum y data of a range of samples,
+	 * including the errors like {@link #getYDataMinMax()}. NaN values are ignored.
+	 * @param fromIndex index of the first sample, 0...<code>getSize()-1</code>
+	 * @param toIndex index of the last sample, <code>fromIndex</code>...<code>getSize()-1</code>
+	 * @return a range includes the min and max as lower and upper.
+	 * return null if there is no value other than NaN.
+	 */
+	public Range getYDataMinMax(int fromIndex, int toIndex);
+
+}
@@ -0,0 +1,39 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+/**
+ * Optional extension of {@link IDataProvider} which can select the samples needed
+ * to draw a chronological trace as a line on a given number of pixel columns.
+ * <p>
+ * When a trace has many more samples than its plot has pixel columns,
+ * many samples are drawn into the same column. A line through the first sample,
+ * the samples with the lowest and the highest y value and the last sample of every
+ * column looks exactly like the line through all samples, so the trace only needs to
+ * draw these samples. {@link AbstractDataProvider} implements this by reading all samples
+ * in the range; data providers that keep an index of their data can do much better.
+ * <p>
+ * <b>Synchronization</b><br>
+ * Like <code>getSample()</code>, this should be called while
+ * <code>synchronized</code> on the data provider.
+ */
+public interface IDecimatingDataProvider extends IBulkDataProvider {
+
+	/**Select the samples needed to draw the samples fromIndex...toIndex as a line.
+	 * The x range xMin...xMax is divided into <code>columns</code> columns of the same width.
+	 * Samples left of xMin and right of xMax are put into an extra column on each side.
+	 * For every column, the indices of the first sample, the samples with the lowest and
+	 * highest y value and the last sample are selected, in ascending order and without duplicates.
+	 * All samples of a column which has NaN as well as other y values are selected,
+	 * so that the gaps in the line are kept.
+	 * @param fromIndex index of the first sample.
+	 * @param toIndex index of the last sample.
+	 * @param xMin x value at the left border of the first column.
+	 * @param xMax x value at the right border of the last column.
+	 * @param columns number of columns
+	 * @param indices array for the indices of the selected samples.
+	 * @return the number of selected samples, or -1 if the data is not chronological
+	 * or the selected samples do not fit into <code>indices</code>.
+	 */
+	public int getDecimatedIndices(int fromIndex, int toIndex, double xMin, double xMax,
+			int columns, int[] indices);
+
+}
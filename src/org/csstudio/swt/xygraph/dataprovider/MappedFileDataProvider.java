@@ -0,0 +1,351 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.csstudio.swt.xygraph.linearscale.Range;
+
+/**
+ * Provides the data of a binary file to a trace, for traces with far more samples
+ * than fit into memory. The file is memory-mapped, so only the pages of the file
+ * which are actually painted are read by the operating system.
+ * <p>
+ * The file has a header of {@link #HEADER_SIZE} bytes with the number of samples,
+ * the data range and whether the data is chronological, so opening a file does not
+ * read the samples. The header is followed by the column of x values and the column of
+ * y values as doubles, and an index with the positions of the lowest and highest y value
+ * and the number of NaN values in every block of {@link #BLOCK_SIZE} samples.
+ * All numbers are little-endian. Files are written by {@link #write(File, IDataProvider)}.
+ * <p>
+ * The data is read-only, so the data provider never notifies its listeners.
+ * Whether the data is chronological is also defined by the file, so
+ * {@link #setChronological(boolean)} only accepts the current value.
+ */
+public class MappedFileDataProvider extends AbstractDataProvider{
+
+	/** First int of the file */
+	public static final int MAGIC = 0x58594744; // "XYGD"
+
+	public static final int VERSION = 1;
+
+	/** Size of the header in bytes */
+	public static final int HEADER_SIZE = 64;
+
+	/** Number of samples in a block of the y index */
+	public static final int BLOCK_SIZE = 1024;
+
+	private static final int FLAG_CHRONOLOGICAL = 1;
+
+	/** A column is mapped in segments of 2^SEGMENT_SHIFT doubles,
+	 *  since a single mapping is limited to 2GB.
+	 */
+	private static final int SEGMENT_SHIFT = 26;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	private final RandomAccessFile file;
+
+	private final int size;
+
+	private final DoubleBuffer[] xSegments;
+
+	private final DoubleBuffer[] ySegments;
+
+	/** For every block: index of the lowest y value, index of the highest y value, number of NaN */
+	private final IntBuffer yIndex;
+
+	private final int[] partResult = new int[3];
+
+	/**Open a data file.
+	 * @param dataFile the file written by {@link #write(File, IDataProvider)}.
+	 * @throws IOException if the file cannot be read or has the wrong format.
+	 */
+	public MappedFileDataProvider(final File dataFile) throws IOException {
+		super(false);
+		file = new RandomAccessFile(dataFile, "r"); //$NON-NLS-1$
+		try{
+			final FileChannel channel = file.getChannel();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while(header.hasRemaining())
+				if(channel.read(header, header.position()) < 0)
+					throw new IOException("Missing header in " + dataFile); //$NON-NLS-1$
+			header.flip();
+			if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException("Unknown data file format: " + dataFile); //$NON-NLS-1$
+			chronological = (header.getInt(8) & FLAG_CHRONOLOGICAL) != 0;
+			if(header.getInt(12) != BLOCK_SIZE)
+				throw new IOException("Unsupported block size in " + dataFile); //$NON-NLS-1$
+			final long count = header.getLong(16);
+			if(count < 0 || count > Integer.MAX_VALUE)
+				throw new IOException("Invalid number of samples in " + dataFile); //$NON-NLS-1$
+			size = (int) count;
+			if(channel.size() < HEADER_SIZE + 16L*size + 12L*getBlockCount(size))
+				throw new IOException("Data file is truncated: " + dataFile); //$NON-NLS-1$
+			if(size > 0){
+				xDataMinMax = new Range(header.getDouble(24), header.getDouble(32));
+				yDataMinMax = new Range(header.getDouble(40), header.getDouble(48));
+			}
+			xSegments = mapColumn(channel, HEADER_SIZE);
+			ySegments = mapColumn(channel, HEADER_SIZE + 8L*size);
+			yIndex = channel.map(MapMode.READ_ONLY, HEADER_SIZE + 16L*size, 12L*getBlockCount(size))
+				.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	private DoubleBuffer[] mapColumn(final FileChannel channel, final long position) throws IOException {
+		final int segments = (size + SEGMENT_MASK) >>> SEGMENT_SHIFT;
+		final DoubleBuffer[] column = new DoubleBuffer[segments];
+		for(int i=0; i<segments; i++){
+			final long first = (long)i << SEGMENT_SHIFT;
+			final long length = Math.min(SEGMENT_MASK + 1L, size - first);
+			column[i] = channel.map(MapMode.READ_ONLY, position + 8*first, 8*length)
+				.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		}
+		return column;
+	}
+
+	private static int getBlockCount(final int size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**Close the file. The mapped data stays valid until it is garbage collected.
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public ISample getSample(int index) {
+		return new Sample(getXValue(index), getYValue(index));
+	}
+
+	private double getXValue(final int index) {
+		return xSegments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+	}
+
+	private double getYValue(final int index) {
+		return ySegments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+	}
+
+	@Override
+	public synchronized void getXValues(int fromIndex, int length, double[] xValues, int offset) {
+		copy(xSegments, fromIndex, length, xValues, offset);
+	}
+
+	@Override
+	public synchronized void getYValues(int fromIndex, int length, double[] yValues, int offset) {
+		copy(ySegments, fromIndex, length, yValues, offset);
+	}
+
+	/** Copy a range of a column, which may span several segments */
+	private static void copy(final DoubleBuffer[] column, int fromIndex, int length,
+			final double[] values, int offset) {
+		while(length > 0){
+			final DoubleBuffer segment = column[fromIndex >>> SEGMENT_SHIFT];
+			final int position = fromIndex & SEGMENT_MASK;
+			final int count = Math.min(length, segment.limit() - position);
+			segment.position(position);
+			segment.get(values, offset, count);
+			fromIndex += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public int binarySearchX(double xValue) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final double midVal = getXValue(mid);
+			if (midVal < xValue)
+				low = mid + 1;
+			else if (midVal > xValue)
+				high = mid - 1;
+			else
+				return mid; // key found
+		}
+		return -(low + 1);  // key not found.
+	}
+
+	/**
+	 * Uses the index of the blocks which are fully covered by the range.
+	 */
+	@Override
+	protected void getYMinMaxIndex(int fromIndex, int toIndex, int[] result) {
+		final int firstBlock = (fromIndex + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		// the last block of the file may be shorter
+		final int endBlock = toIndex == size - 1 ? getBlockCount(size) : (toIndex + 1) / BLOCK_SIZE;
+		if(firstBlock >= endBlock){
+			super.getYMinMaxIndex(fromIndex, toIndex, result);
+			return;
+		}
+		result[0] = -1;
+		result[1] = -1;
+		result[2] = 0;
+		if(fromIndex < firstBlock*BLOCK_SIZE)
+			includeScan(fromIndex, firstBlock*BLOCK_SIZE - 1, result);
+		for(int block = firstBlock; block < endBlock; block++)
+			include(yIndex.get(3*block), yIndex.get(3*block + 1), yIndex.get(3*block + 2), result);
+		if(endBlock*BLOCK_SIZE <= toIndex)
+			includeScan(endBlock*BLOCK_SIZE, toIndex, result);
+	}
+
+	/**
+	 * Uses the index of the blocks like {@link #getYMinMaxIndex(int, int, int[])},
+	 * so only the partial blocks at both ends of the range are scanned.
+	 * The samples of a data file have no errors.
+	 */
+	@Override
+	public synchronized Range getYDataMinMax(int fromIndex, int toIndex) {
+		if(fromIndex > toIndex)
+			return null;
+		final int[] result = new int[3];
+		getYMinMaxIndex(fromIndex, toIndex, result);
+		if(result[0] < 0 || result[1] < 0)
+			return null;
+		return new Range(getYValue(result[0]), getYValue(result[1]));
+	}
+
+	private void includeScan(final int fromIndex, final int toIndex, final int[] result) {
+		super.getYMinMaxIndex(fromIndex, toIndex, partResult);
+		include(partResult[0], partResult[1], partResult[2], result);
+	}
+
+	private void include(final int minIndex, final int maxIndex, final int nanCount, final int[] result) {
+		if(minIndex >= 0 && (result[0] < 0 || getYValue(minIndex) < getYValue(result[0])))
+			result[0] = minIndex;
+		if(maxIndex >= 0 && (result[1] < 0 || getYValue(maxIndex) > getYValue(result[1])))
+			result[1] = maxIndex;
+		result[2] += nanCount;
+	}
+
+	/**{@inheritDoc}
+	 * <p>
+	 * The data file defines whether the data is chronological,
+	 * so setting the current value again is the only change allowed.
+	 * @throws IllegalArgumentException if the value differs from {@link #isChronological()}.
+	 */
+	@Override
+	public void setChronological(boolean chronological) {
+		if(chronological != isChronological())
+			throw new IllegalArgumentException("The data file defines whether it is chronological."); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void innerUpdate() {
+		// data never changes
+	}
+
+	@Override
+	protected void updateDataRange() {
+		// data range is read from the header
+	}
+
+	/**Write the samples of a data provider to a data file.
+	 * Only the x and y values of the samples are written.
+	 * @param dataFile the file to write.
+	 * @param data the data provider with the samples.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void write(final File dataFile, final IDataProvider data) throws IOException {
+		final RandomAccessFile out = new RandomAccessFile(dataFile, "rw"); //$NON-NLS-1$
+		try{
+			out.setLength(0);
+			final FileChannel channel = out.getChannel();
+			final int size = data.getSize();
+			final double[] range = new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+					Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+			final ByteBuffer buffer = ByteBuffer.allocate(8*BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			// x column
+			channel.position(HEADER_SIZE);
+			for(int i=0; i<size; i++){
+				final double x = data.getSample(i).getXValue();
+				if(x < range[0])
+					range[0] = x;
+				if(x > range[1])
+					range[1] = x;
+				buffer.putDouble(x);
+				if(!buffer.hasRemaining())
+					flush(buffer, channel);
+			}
+			flush(buffer, channel);
+			// y column and the index of its blocks
+			final int[] index = new int[3*getBlockCount(size)];
+			double blockMin = 0, blockMax = 0;
+			for(int i=0; i<size; i++){
+				final double y = data.getSample(i).getYValue();
+				final int block = 3*(i/BLOCK_SIZE);
+				if(i % BLOCK_SIZE == 0){
+					index[block] = -1;
+					index[block+1] = -1;
+				}
+				if(Double.isNaN(y))
+					index[block+2]++;
+				else{
+					if(index[block] < 0 || y < blockMin){
+						index[block] = i;
+						blockMin = y;
+					}
+					if(index[block+1] < 0 || y > blockMax){
+						index[block+1] = i;
+						blockMax = y;
+					}
+					if(y < range[2])
+						range[2] = y;
+					if(y > range[3])
+						range[3] = y;
+				}
+				buffer.putDouble(y);
+				if(!buffer.hasRemaining())
+					flush(buffer, channel);
+			}
+			flush(buffer, channel);
+			for(int i=0; i<index.length; i++){
+				if(buffer.remaining() < 4)
+					flush(buffer, channel);
+				buffer.putInt(index[i]);
+			}
+			flush(buffer, channel);
+			// header
+			for(int i=0; i<range.length; i++)
+				if(Double.isInfinite(range[i]))
+					range[i] = Double.NaN;
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(data.isChronological() ? FLAG_CHRONOLOGICAL : 0);
+			buffer.putInt(BLOCK_SIZE);
+			buffer.putLong(size);
+			for(double value : range)
+				buffer.putDouble(value);
+			buffer.putLong(0);
+			channel.position(0);
+			flush(buffer, channel);
+		}finally{
+			out.close();
+		}
+	}
+
+	private static void flush(final ByteBuffer buffer, final FileChannel channel) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
@@ -0,0 +1,235 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.Arrays;
+
+/**Keeps track of where the lowest and the highest y values are in a data provider
+ * which is filled like a circular buffer, for {@link IDecimatingDataProvider}.
+ * New samples are appended to the tail, and once there are <code>capacity</code>
+ * samples, every new sample replaces the head.
+ * <p>
+ * The samples are grouped in blocks of {@link #BLOCK_SIZE} in the order they were added.
+ * For every block, the position and value of its lowest and highest y value
+ * and the number of its NaN values are stored in a segment tree, so every level of
+ * the tree is the data at half the resolution of the level below.
+ * Adding a sample costs O(log(capacity/BLOCK_SIZE)) and finding the lowest and
+ * highest y value of any range of samples costs O(BLOCK_SIZE + log(capacity/BLOCK_SIZE)).
+ * <p>
+ * The owner has to call {@link #add(double)} for every sample appended to the data,
+ * and {@link #rebuild(int)} whenever the data is changed in any other way.
+ */
+public class MinMaxPyramid {
+
+	/** Number of samples in a block */
+	public static final int BLOCK_SIZE = 16;
+
+	private final IBulkDataProvider data;
+
+	private int capacity;
+
+	/** Number of blocks in the tree, enough for all samples of a full buffer */
+	private int blockCount;
+
+	/** Segment trees over the blocks: node i has the children 2i and 2i+1,
+	 *  block b is stored in the leaf <code>blockCount + b % blockCount</code>
+	 */
+	private double[] yMin, yMax;
+
+	/** Sequence numbers of the samples with the values in yMin and yMax */
+	private long[] minSequence, maxSequence;
+
+	private int[] nanCount;
+
+	/** Number of samples added since the last reset, which is the sequence number of the next sample */
+	private long added;
+
+	/** Buffer for reading the samples of a partially covered block */
+	private final double[] yValues = new double[BLOCK_SIZE];
+
+	/** Result of a query, as sequence numbers */
+	private double resultMin, resultMax;
+	private long resultMinSequence, resultMaxSequence;
+	private int resultNaNCount;
+
+	/**
+	 * @param data the data provider which holds the samples. Its y values are read
+	 * when a range starts or ends inside of a block.
+	 * @param capacity the maximum number of samples in the data provider.
+	 */
+	public MinMaxPyramid(final IBulkDataProvider data, final int capacity) {
+		this.data = data;
+		reset(capacity);
+	}
+
+	/**Forget all samples.
+	 * @param capacity the maximum number of samples in the data provider.
+	 */
+	public void reset(final int capacity) {
+		this.capacity = capacity;
+		blockCount = capacity / BLOCK_SIZE + 2;
+		yMin = new double[2*blockCount];
+		yMax = new double[2*blockCount];
+		minSequence = new long[2*blockCount];
+		maxSequence = new long[2*blockCount];
+		nanCount = new int[2*blockCount];
+		Arrays.fill(yMin, Double.POSITIVE_INFINITY);
+		Arrays.fill(yMax, Double.NEGATIVE_INFINITY);
+		Arrays.fill(minSequence, -1);
+		Arrays.fill(maxSequence, -1);
+		added = 0;
+	}
+
+	/**Read all samples from the data provider again.
+	 * @param capacity the maximum number of samples in the data provider.
+	 */
+	public void rebuild(final int capacity) {
+		reset(capacity);
+		final int size = data.getSize();
+		for(int i=0; i<size; i += BLOCK_SIZE){
+			final int length = Math.min(BLOCK_SIZE, size - i);
+			data.getYValues(i, length, yValues, 0);
+			for(int j=0; j<length; j++)
+				add(yValues[j]);
+		}
+	}
+
+	/**Add a sample which was appended to the tail of the data.
+	 * @param y the y value of the new sample.
+	 */
+	public void add(final double y) {
+		final long sequence = added++;
+		final int node = blockCount + (int)((sequence / BLOCK_SIZE) % blockCount);
+		if(sequence % BLOCK_SIZE == 0){ // first sample of a block replaces an old block
+			yMin[node] = Double.POSITIVE_INFINITY;
+			yMax[node] = Double.NEGATIVE_INFINITY;
+			minSequence[node] = -1;
+			maxSequence[node] = -1;
+			nanCount[node] = 0;
+		}
+		if(Double.isNaN(y))
+			nanCount[node]++;
+		else{
+			if(y < yMin[node]){
+				yMin[node] = y;
+				minSequence[node] = sequence;
+			}
+			if(y > yMax[node]){
+				yMax[node] = y;
+				maxSequence[node] = sequence;
+			}
+		}
+		for(int i = node >> 1; i >= 1; i >>= 1){
+			final int left = 2*i;
+			final int right = left + 1;
+			final int minChild = yMin[right] < yMin[left] ? right : left;
+			yMin[i] = yMin[minChild];
+			minSequence[i] = minSequence[minChild];
+			final int maxChild = yMax[right] > yMax[left] ? right : left;
+			yMax[i] = yMax[maxChild];
+			maxSequence[i] = maxSequence[maxChild];
+			nanCount[i] = nanCount[left] + nanCount[right];
+		}
+	}
+
+	/**
+	 * @return the number of samples in the data, according to the added samples.
+	 */
+	public int size() {
+		return (int) Math.min(added, capacity);
+	}
+
+	/**Find the samples with the lowest and the highest y value in a range of samples.
+	 * @param fromIndex index of the first sample, 0...<code>size()-1</code>
+	 * @param toIndex index of the last sample, <code>fromIndex</code>...<code>size()-1</code>
+	 * @param result array for the index of the lowest y value, the index of the highest y value
+	 * and the number of NaN values. The indices are -1 if there are only NaN values.
+	 */
+	public void getYMinMaxIndex(final int fromIndex, final int toIndex, final int[] result) {
+		resultMin = Double.POSITIVE_INFINITY;
+		resultMax = Double.NEGATIVE_INFINITY;
+		resultMinSequence = -1;
+		resultMaxSequence = -1;
+		resultNaNCount = 0;
+		final long head = added - size();
+		final long first = head + fromIndex;
+		final long last = head + toIndex;
+		final long firstBlock = first / BLOCK_SIZE;
+		final long lastBlock = last / BLOCK_SIZE;
+		if(firstBlock == lastBlock)
+			scan(first, last, head);
+		else{
+			// Blocks at both ends are only read from the tree when fully covered
+			long lowBlock = firstBlock;
+			if(first % BLOCK_SIZE != 0){
+				scan(first, (firstBlock+1)*BLOCK_SIZE - 1, head);
+				lowBlock++;
+			}
+			long highBlock = lastBlock;
+			if(last != added - 1 && (last+1) % BLOCK_SIZE != 0){
+				scan(lastBlock*BLOCK_SIZE, last, head);
+				highBlock--;
+			}
+			if(lowBlock <= highBlock){
+				final int lowSlot = (int)(lowBlock % blockCount);
+				final int highSlot = (int)(highBlock % blockCount);
+				if(lowSlot <= highSlot)
+					query(lowSlot, highSlot);
+				else{
+					query(lowSlot, blockCount-1);
+					query(0, highSlot);
+				}
+			}
+		}
+		result[0] = resultMinSequence < 0 ? -1 : (int)(resultMinSequence - head);
+		result[1] = resultMaxSequence < 0 ? -1 : (int)(resultMaxSequence - head);
+		result[2] = resultNaNCount;
+	}
+
+	/**Include the samples with sequence number first...last in the result.
+	 * @param head sequence number of the sample at index 0
+	 */
+	private void scan(final long first, final long last, final long head) {
+		final int length = (int)(last - first + 1);
+		data.getYValues((int)(first - head), length, yValues, 0);
+		for(int i=0; i<length; i++){
+			final double y = yValues[i];
+			if(Double.isNaN(y))
+				resultNaNCount++;
+			else
+				include(y, first + i, y, first + i);
+		}
+	}
+
+	/**Include the blocks in the slots lowSlot...highSlot in the result.*/
+	private void query(final int lowSlot, final int highSlot) {
+		int low = lowSlot + blockCount;
+		int high = highSlot + blockCount + 1;
+		while(low < high){
+			if((low & 1) == 1){
+				include(low);
+				low++;
+			}
+			if((high & 1) == 1){
+				high--;
+				include(high);
+			}
+			low >>= 1;
+			high >>= 1;
+		}
+	}
+
+	private void include(final int node) {
+		include(yMin[node], minSequence[node], yMax[node], maxSequence[node]);
+		resultNaNCount += nanCount[node];
+	}
+
+	private void include(final double min, final long minSeq, final double max, final long maxSeq) {
+		if(min < resultMin){
+			resultMin = min;
+			resultMinSequence = minSeq;
+		}
+		if(max > resultMax){
+			resultMax = max;
+			resultMaxSequence = maxSeq;
+		}
+	}
+}
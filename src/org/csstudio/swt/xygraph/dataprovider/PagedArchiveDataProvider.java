@@ -0,0 +1,296 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.csstudio.swt.xygraph.figures.Axis;
+import org.csstudio.swt.xygraph.figures.IAxisListener;
+import org.csstudio.swt.xygraph.linearscale.Range;
+
+/**
+ * Provides the data of an {@link IArchiveSource} to a trace, loading only the part
+ * which is visible on the x axis.
+ * <p>
+ * The x axis is divided into pages of the same width. The pages of the visible range
+ * and one page on each side are loaded on a background thread, and the most recently
+ * used pages are kept in a cache. The data provider contains all resident pages
+ * around the visible range, so the trace paints whatever is already loaded and is
+ * notified on the UI thread whenever another page arrives.
+ * <p>
+ * Add the data provider as a listener to the x axis of its trace,
+ * or call {@link #setVisibleRange(Range)} whenever the visible range changes.
+ * The x axis should not be auto-scaled, since the data range only covers the resident pages.
+ * <p>
+ * Archived data is always chronological, so {@link #setChronological(boolean)}
+ * only accepts <code>true</code>.
+ */
+public class PagedArchiveDataProvider extends AbstractDataProvider implements IAxisListener{
+
+	private final IArchiveSource source;
+
+	private final double pageWidth;
+
+	/** Loaded pages by page number, in the order of their last use. Guarded by <code>this</code> */
+	private final LinkedHashMap<Long, ISample[]> cache;
+
+	/** Pages which are being loaded. Guarded by <code>this</code> */
+	private final Set<Long> pending = new HashSet<Long>();
+
+	private final ExecutorService loader;
+
+	/** Pages around the visible range, which are loaded and shown. Guarded by <code>this</code> */
+	private long firstPage = 0, lastPage = -1;
+
+	/** Resident pages between firstPage and lastPage, in ascending order */
+	private ISample[][] viewPages = new ISample[0][];
+
+	/** Index of the first sample of every page in viewPages, and the total size at the end */
+	private int[] viewOffsets = new int[]{0};
+
+	private volatile Exception lastError;
+
+	private boolean dataRangeDirty = true;
+
+	/** Is a notification about loaded pages waiting for the UI thread? */
+	private final AtomicBoolean notifyScheduled = new AtomicBoolean(false);
+
+	private final Runnable pagesLoaded = new Runnable(){
+		public void run() {
+			notifyScheduled.set(false);
+			fireDataChange();
+		}
+	};
+
+	/**
+	 * @param source the source of the samples.
+	 * @param pageWidth the width of a page in x units, for example a day in milliseconds.
+	 * @param cacheSize the number of pages to keep in memory, which should be
+	 * at least the number of pages in the widest visible range plus two.
+	 */
+	public PagedArchiveDataProvider(final IArchiveSource source, final double pageWidth, final int cacheSize) {
+		super(true);
+		if(!(pageWidth > 0) || cacheSize <= 0)
+			throw new IllegalArgumentException();
+		this.source = source;
+		this.pageWidth = pageWidth;
+		cache = new LinkedHashMap<Long, ISample[]>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ISample[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		loader = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "Archive Loader"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**Show the samples in a range of x values, loading the pages which are not
+	 * in the cache yet. The pages next to the range are loaded as well, so they are
+	 * ready when the user pans. Pages which could not be loaded are tried again.
+	 * @param xRange the visible range of the x axis.
+	 */
+	public void setVisibleRange(final Range xRange) {
+		final long first = getPage(Math.min(xRange.getLower(), xRange.getUpper())) - 1;
+		final long last = getPage(Math.max(xRange.getLower(), xRange.getUpper())) + 1;
+		final List<Long> toLoad = new ArrayList<Long>();
+		final boolean moved;
+		synchronized (this) {
+			moved = first != firstPage || last != lastPage;
+			firstPage = first;
+			lastPage = last;
+			// visible pages first, then the neighbors
+			for(long page = first + 1; page < last; page++)
+				if(!cache.containsKey(page) && pending.add(page))
+					toLoad.add(page);
+			if(!cache.containsKey(first) && pending.add(first))
+				toLoad.add(first);
+			if(!cache.containsKey(last) && pending.add(last))
+				toLoad.add(last);
+			if(moved)
+				updateView();
+		}
+		for(final Long page : toLoad)
+			loader.execute(new Runnable(){
+				public void run() {
+					load(page);
+				}
+			});
+		if(moved)
+			fireDataChange();
+	}
+
+	/** Load a page on the background thread */
+	private void load(final long page) {
+		synchronized (this) {
+			if(page < firstPage || page > lastPage){
+				// scrolled away before the page was loaded
+				pending.remove(page);
+				return;
+			}
+		}
+		final ISample[] samples;
+		try{
+			final List<ISample> list = source.getSamples(page * pageWidth, (page+1) * pageWidth);
+			samples = list.toArray(new ISample[list.size()]);
+		}catch (Exception e) {
+			lastError = e;
+			// not cached, so the next setVisibleRange() tries again
+			synchronized (this) {
+				pending.remove(page);
+			}
+			return;
+		}
+		final boolean visible;
+		synchronized (this) {
+			pending.remove(page);
+			cache.put(page, samples);
+			visible = page >= firstPage && page <= lastPage;
+			if(visible)
+				updateView();
+		}
+		if(visible)
+			firePagesLoaded();
+	}
+
+	/** Notify the listeners about loaded pages on the UI thread, see {@link #setUIExecutor(Executor)}.
+	 *  Without a display, they are notified on the loader thread.
+	 */
+	private void firePagesLoaded() {
+		final Executor uiExecutor = getUIExecutor();
+		if(uiExecutor == null)
+			fireDataChange();
+		else if(notifyScheduled.compareAndSet(false, true))
+			uiExecutor.execute(pagesLoaded);
+	}
+
+	/** Collect the resident pages between firstPage and lastPage */
+	private synchronized void updateView() {
+		final List<ISample[]> pages = new ArrayList<ISample[]>();
+		for(long page = firstPage; page <= lastPage; page++){
+			final ISample[] samples = cache.get(page);
+			if(samples != null && samples.length > 0)
+				pages.add(samples);
+		}
+		viewPages = pages.toArray(new ISample[pages.size()][]);
+		viewOffsets = new int[viewPages.length + 1];
+		for(int i=0; i<viewPages.length; i++)
+			viewOffsets[i+1] = viewOffsets[i] + viewPages[i].length;
+		dataRangeDirty = true;
+	}
+
+	private long getPage(final double x) {
+		return (long) Math.floor(x / pageWidth);
+	}
+
+	/**
+	 * @return the exception of the last page which could not be loaded, or null.
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * @return true if some pages around the visible range are still being loaded.
+	 */
+	public synchronized boolean isLoading() {
+		for(Long page : pending)
+			if(page >= firstPage && page <= lastPage)
+				return true;
+		return false;
+	}
+
+	/**Stop the background thread. The data provider cannot load pages after this.
+	 */
+	public void dispose() {
+		loader.shutdownNow();
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return viewOffsets[viewOffsets.length - 1];
+	}
+
+	@Override
+	public synchronized ISample getSample(int index) {
+		// find the page, like Arrays.binarySearch on the offsets
+		int low = 0;
+		int high = viewPages.length - 1;
+		while(low < high){
+			final int mid = (low + high + 1) >>> 1;
+			if(viewOffsets[mid] <= index)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return viewPages[low][index - viewOffsets[low]];
+	}
+
+	/**{@inheritDoc}
+	 * <p>
+	 * Archived data is always chronological,
+	 * so setting it to true again is the only change allowed.
+	 * @throws IllegalArgumentException if chronological is false.
+	 */
+	@Override
+	public void setChronological(boolean chronological) {
+		if(!chronological)
+			throw new IllegalArgumentException("Archived data is always chronological."); //$NON-NLS-1$
+	}
+
+	@Override
+	protected void innerUpdate() {
+		// the view is updated when pages are loaded
+	}
+
+	@Override
+	protected synchronized void updateDataRange() {
+		if(!dataRangeDirty)
+			return;
+		dataRangeDirty = false;
+		final int size = getSize();
+		if(size <= 0){
+			xDataMinMax = null;
+			yDataMinMax = null;
+			return;
+		}
+		double yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+		for(ISample[] page : viewPages)
+			for(ISample sample : page){
+				final double y = sample.getYValue();
+				if(y - sample.getYMinusError() < yMin)
+					yMin = y - sample.getYMinusError();
+				if(y + sample.getYPlusError() > yMax)
+					yMax = y + sample.getYPlusError();
+			}
+		final ISample first = getSample(0);
+		final ISample last = getSample(size - 1);
+		xDataMinMax = new Range(first.getXValue() - first.getXMinusError(),
+				last.getXValue() + last.getXPlusError());
+		yDataMinMax = yMin > yMax ? new Range(Double.NaN, Double.NaN) : new Range(yMin, yMax);
+	}
+
+	/**Load the pages of the new range.
+	 * @see org.csstudio.swt.xygraph.figures.IAxisListener#axisRangeChanged(org.csstudio.swt.xygraph.figures.Axis, org.csstudio.swt.xygraph.linearscale.Range, org.csstudio.swt.xygraph.linearscale.Range)
+	 */
+	public void axisRangeChanged(Axis axis, Range old_range, Range new_range) {
+		setVisibleRange(new_range);
+	}
+
+	public void axisRevalidated(Axis axis) {
+		// only the range matters
+	}
+}
@@ -0,0 +1,47 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+/**The storage of the samples of an {@link AbstractCircularBufferDataProvider}.
+ * New samples are appended to the tail of the buffer. When the buffer is full,
+ * the oldest sample is dropped when a new sample is added.
+ */
+interface SampleBuffer {
+
+	/**Add a point without error and info.
+	 * @param x the x value
+	 * @param y the y value
+	 */
+	void add(double x, double y);
+
+	/**Add a sample.
+	 * @param sample
+	 */
+	void add(ISample sample);
+
+	/**
+	 * @param index the index of the sample in the buffer.
+	 * @return the x value of the sample.
+	 */
+	double getXValue(int index);
+
+	/**
+	 * @return the number of samples in the buffer.
+	 */
+	int size();
+
+	/**
+	 * @return the maximum number of samples in the buffer.
+	 */
+	int getBufferSize();
+
+	/**
+	 * Remove all samples.
+	 */
+	void clear();
+
+	/**Set the buffer size.
+	 * @param bufferSize the bufferSize to set
+	 * @param clear clear the buffer if true. Otherwise keep the oldest samples
+	 * which fit into the new buffer size.
+	 */
+	void setBufferSize(int bufferSize, boolean clear);
+}
@@ -0,0 +1,118 @@
+package org.csstudio.swt.xygraph.dataprovider;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**A bounded queue of x/y points which threads can publish to without locking,
+ * for handing samples from data sources to the UI thread.
+ * <p>
+ * The points are stored in primitive arrays which are used as a ring.
+ * Every slot has a sequence number which tells whether the slot is free for
+ * the next producer or filled for the next consumer, so both sides only
+ * need a compare-and-set on their position and never wait for each other.
+ * Any number of threads may publish and drain at the same time.
+ */
+public class SampleQueue {
+
+	private final int mask;
+
+	private final double[] xValues;
+
+	private final double[] yValues;
+
+	/** Sequence number of every slot: equal to the enqueue position if the slot
+	 *  is free, one more than that if it holds a point for the dequeue position.
+	 */
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong enqueuePosition = new AtomicLong();
+
+	private final AtomicLong dequeuePosition = new AtomicLong();
+
+	/**
+	 * @param capacity the maximum number of points in the queue,
+	 * which is rounded up to the next power of two.
+	 */
+	public SampleQueue(final int capacity) {
+		int size = 1;
+		while(size < capacity)
+			size <<= 1;
+		mask = size - 1;
+		xValues = new double[size];
+		yValues = new double[size];
+		sequences = new AtomicLongArray(size);
+		for(int i=0; i<size; i++)
+			sequences.set(i, i);
+	}
+
+	/**
+	 * @return the maximum number of points in the queue.
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**Add a point to the queue.
+	 * @param x the x value
+	 * @param y the y value
+	 * @return false if the queue is full, so the point was not added.
+	 */
+	public boolean offer(final double x, final double y) {
+		long position = enqueuePosition.get();
+		while(true){
+			final int slot = (int)(position & mask);
+			final long difference = sequences.get(slot) - position;
+			if(difference == 0){
+				if(enqueuePosition.compareAndSet(position, position + 1)){
+					xValues[slot] = x;
+					yValues[slot] = y;
+					// publishes the values to the consumer
+					sequences.set(slot, position + 1);
+					return true;
+				}
+				position = enqueuePosition.get();
+			}else if(difference < 0)
+				return false; // the consumer has not taken the point from a lap ago yet
+			else
+				position = enqueuePosition.get();
+		}
+	}
+
+	/**Take points from the queue, oldest first.
+	 * @param xValues array for the x values.
+	 * @param yValues array for the y values.
+	 * @param offset the position in the arrays for the first point.
+	 * @param length the maximum number of points to take.
+	 * @return the number of points taken, 0 if the queue is empty.
+	 */
+	public int poll(final double[] xValues, final double[] yValues, final int offset, final int length) {
+		int count = 0;
+		long position = dequeuePosition.get();
+		while(count < length){
+			final int slot = (int)(position & mask);
+			final long difference = sequences.get(slot) - (position + 1);
+			if(difference == 0){
+				if(dequeuePosition.compareAndSet(position, position + 1)){
+					xValues[offset + count] = this.xValues[slot];
+					yValues[offset + count] = this.yValues[slot];
+					count++;
+					// frees the slot for the producer one lap ahead
+					sequences.set(slot, position + mask + 1);
+					position++;
+				}else
+					position = dequeuePosition.get();
+			}else if(difference < 0)
+				break; // empty
+			else
+				position = dequeuePosition.get();
+		}
+		return count;
+	}
+
+	/**
+	 * @return true if there is no point in the queue at the moment.
+	 */
+	public boolean isEmpty() {
+		return dequeuePosition.get() >= enqueuePosition.get();
+	}
+}
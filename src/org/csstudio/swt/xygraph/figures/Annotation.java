@@ -690,18 +690,7 @@ class Pointer extends Figure{
 			}else{ //snap to trace
 				//double tempX = xAxis.getPositionValue(me.getLocation().x, false);
 				//double tempY = yAxis.getPositionValue(me.getLocation().y, false);
-				ISample tempSample = null;
-				double minD = Double.POSITIVE_INFINITY;
-				double d;
-				for(ISample s : trace.getHotSampleList()){
-					d =  Math.sqrt(Math.pow(
-							xAxis.getValuePosition(s.getXValue(), false) - me.getLocation().x, 2) + 
-							Math.pow(yAxis.getValuePosition(s.getYValue(), false) - me.getLocation().y, 2));
-					if(minD > d){
-						minD = d;
-						tempSample = s;
-					}						 
-				}	
+				ISample tempSample = trace.getNearestHotSample(me.getLocation().x, me.getLocation().y);
 				if(tempSample != null && currentSnappedSample != tempSample)
 					setCurrentSnappedSample(tempSample, 
 							me.getState() == (InputEvent.BUTTON1 | InputEvent.CONTROL));
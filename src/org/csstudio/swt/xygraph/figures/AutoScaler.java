@@ -0,0 +1,104 @@
+package org.csstudio.swt.xygraph.figures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Auto-scales several axes at once. The data ranges of all axes are computed
+ * concurrently from the data providers of their traces, then the ranges are
+ * applied to the axes on the calling thread, which should be the UI thread.
+ */
+class AutoScaler {
+
+	private AutoScaler() {
+	}
+
+	/**Auto-scale axes like {@link Axis#performAutoScale(boolean)} does for each of them.
+	 * @param axes the axes to auto-scale.
+	 * @param force if true, the axes are auto-scaled regardless of their autoScale field.
+	 * @return the axes which are repainted due to range change.
+	 */
+	static Set<Axis> autoScale(final Collection<Axis> axes, final boolean force) {
+		// Snapshot the traces of the axes on this thread
+		final List<Axis> scaled = new ArrayList<Axis>(axes.size());
+		final List<IDataProvider[]> providers = new ArrayList<IDataProvider[]>(axes.size());
+		final List<Range[]> xRanges = new ArrayList<Range[]>(axes.size());
+		for(Axis axis : axes){
+			if(axis.needsAutoScale(force)){
+				scaled.add(axis);
+				providers.add(axis.getTraceDataProviders());
+				xRanges.add(axis.getTraceXRanges());
+			}
+		}
+		final Range[] ranges = new Range[scaled.size()];
+		if(ranges.length == 1)
+			ranges[0] = Axis.getDataRange(providers.get(0), xRanges.get(0), scaled.get(0).isHorizontal());
+		else if(ranges.length > 1)
+			computeRanges(scaled, providers, xRanges, ranges);
+		// Apply the ranges, the layout is updated once for all of them.
+		// The x axes come last, because a y axis which fits the visible data
+		// is auto-scaled again when the range of its x axis changes.
+		final Set<Axis> repainted = new HashSet<Axis>();
+		for(int i=0; i<ranges.length; i++)
+			if(!scaled.get(i).isHorizontal() && scaled.get(i).applyAutoScale(ranges[i]))
+				repainted.add(scaled.get(i));
+		for(int i=0; i<ranges.length; i++)
+			if(scaled.get(i).isHorizontal() && scaled.get(i).applyAutoScale(ranges[i]))
+				repainted.add(scaled.get(i));
+		return repainted;
+	}
+
+	/** Compute the data ranges of the axes on the {@link GraphWorkers} and this thread.
+	 *  The workers may be busy preparing trace geometries, so this thread computes
+	 *  every range which no worker has started yet instead of waiting for it.
+	 */
+	private static void computeRanges(final List<Axis> axes, final List<IDataProvider[]> providers,
+			final List<Range[]> xRanges, final Range[] ranges) {
+		final Display display = Display.getCurrent();
+		final List<FutureTask<Range>> futures = new ArrayList<FutureTask<Range>>(ranges.length - 1);
+		for(int i=1; i<ranges.length; i++){
+			final IDataProvider[] axisProviders = providers.get(i);
+			final Range[] axisXRanges = xRanges.get(i);
+			final boolean horizontal = axes.get(i).isHorizontal();
+			final FutureTask<Range> future = new FutureTask<Range>(new Callable<Range>(){
+				public Range call() {
+					return Axis.getDataRange(axisProviders, axisXRanges, horizontal);
+				}
+			});
+			futures.add(future);
+			GraphWorkers.execute(display, future);
+		}
+		ranges[0] = Axis.getDataRange(providers.get(0), xRanges.get(0), axes.get(0).isHorizontal());
+		boolean interrupted = false;
+		for(int i=1; i<ranges.length; i++){
+			final FutureTask<Range> future = futures.get(i - 1);
+			future.run(); // does nothing if a worker started it
+			for(;;){
+				try {
+					ranges[i] = future.get();
+					break;
+				} catch (InterruptedException e) { // wait anyway, the ranges are needed now
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof RuntimeException)
+						throw (RuntimeException) e.getCause();
+					if(e.getCause() instanceof Error)
+						throw (Error) e.getCause();
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+}
@@ -1,7 +1,9 @@
 package org.csstudio.swt.xygraph.figures;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
 import org.csstudio.swt.xygraph.linearscale.LinearScale;
@@ -9,10 +11,10 @@ import org.csstudio.swt.xygraph.linearscale.Range;
 import org.csstudio.swt.xygraph.undo.AxisPanOrZoomCommand;
 import org.csstudio.swt.xygraph.undo.SaveStateCommand;
 import org.csstudio.swt.xygraph.undo.ZoomType;
+import org.csstudio.swt.xygraph.util.DataRangeUtil;
 import org.csstudio.swt.xygraph.util.GraphicsUtil;
 import org.csstudio.swt.xygraph.util.XYGraphMediaFactory;
 import org.csstudio.swt.xygraph.util.XYGraphMediaFactory.CURSOR_TYPE;
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.MouseEvent;
 import org.eclipse.draw2d.MouseListener;
@@ -54,6 +56,8 @@ public class Axis extends LinearScale{
 		
 	private boolean autoScale = false;
 	
+	private boolean autoScaleVisibleData = false;
+	
 	private boolean showMajorGrid = false;
 	
 	private boolean showMinorGrid = false;
@@ -129,6 +133,24 @@ public class Axis extends LinearScale{
 		Range old_range = getRange();
 		super.setRange(lower, upper);
 		fireAxisRangeChanged(old_range, getRange());
+		if(isHorizontal() && !getRange().equals(old_range))
+			autoScaleVisibleDataAxes();
+	}
+	
+	/** Auto-scale the y axes of the traces on this x axis which
+	 *  only fit the data in the range of this axis. */
+	private void autoScaleVisibleDataAxes() {
+		Set<Axis> yAxes = null;
+		for(Trace trace : traceList){
+			final Axis yAxis = trace.getYAxis();
+			if(yAxis != null && yAxis.autoScaleVisibleData && yAxis.needsAutoScale(false)){
+				if(yAxes == null)
+					yAxes = new LinkedHashSet<Axis>();
+				yAxes.add(yAxis);
+			}
+		}
+		if(yAxes != null)
+			AutoScaler.autoScale(yAxes, false);
 	}
 	
 	@Override
@@ -155,9 +177,9 @@ public class Axis extends LinearScale{
 	public Dimension getPreferredSize(final int wHint, final int hHint) {
 	    final Dimension d = super.getPreferredSize(wHint, hHint);		
 		if(isHorizontal())
-			d.height += FigureUtilities.getTextExtents(title, titleFont).height + GAP;
+			d.height += XYGraphMediaFactory.getInstance().getTextExtents(title, titleFont).height + GAP;
 		else
-			d.width += FigureUtilities.getTextExtents(title, titleFont).height + GAP;
+			d.width += XYGraphMediaFactory.getInstance().getTextExtents(title, titleFont).height + GAP;
 		return d;
 	}
 	
@@ -167,7 +189,7 @@ public class Axis extends LinearScale{
 		
 		graphics.pushState();
 		graphics.setFont(titleFont);		
-		final Dimension titleSize = FigureUtilities.getTextExtents(title, titleFont);
+		final Dimension titleSize = XYGraphMediaFactory.getInstance().getTextExtents(title, titleFont);
 		if(isHorizontal()){
 			if(getTickLablesSide() == LabelSide.Primary)
 				graphics.drawText(title, 
@@ -215,18 +237,65 @@ public class Axis extends LinearScale{
 	 *          Returns <code>null</code> if there is no trace data.
 	 */
     public Range getTraceDataRange()
+    {
+        return getDataRange(getTraceDataProviders(), getTraceXRanges(), isHorizontal());
+    }
+
+    /** @return the data providers of the traces on this axis, in a new array.
+     *          Traces without a data provider have a <code>null</code> entry.
+     */
+    IDataProvider[] getTraceDataProviders()
+    {
+        final IDataProvider[] providers = new IDataProvider[traceList.size()];
+        for (int i=0; i<providers.length; i++)
+            providers[i] = traceList.get(i).getDataProvider();
+        return providers;
+    }
+
+    /** @return the ranges of the x axes of the traces on this axis, in a new array,
+     *          if the auto-scale of this axis only fits the visible data;
+     *          otherwise <code>null</code>.
+     *  @see #isAutoScaleVisibleData()
+     */
+    Range[] getTraceXRanges()
+    {
+        if (!autoScaleVisibleData || isHorizontal())
+            return null;
+        final Range[] xRanges = new Range[traceList.size()];
+        for (int i=0; i<xRanges.length; i++)
+        {
+            final Axis xAxis = traceList.get(i).getXAxis();
+            if (xAxis != null)
+                xRanges[i] = xAxis.getRange();
+        }
+        return xRanges;
+    }
+
+    /** Get the range of the data of some providers. May be called on any thread.
+     *  @param providers the data providers, <code>null</code> entries are skipped.
+     *  @param xRanges <code>null</code> for the range of all data; otherwise the
+     *         x range of each provider, to which its y data range is limited.
+     *  @param horizontal true for the range of the x data, false for the y data.
+     *  @return Range that reflects the minimum and maximum value of all providers.
+     *          Returns <code>null</code> if there is no data.
+     */
+    static Range getDataRange(final IDataProvider[] providers, final Range[] xRanges,
+            final boolean horizontal)
     {
         double low = Double.POSITIVE_INFINITY;
         double high = Double.NEGATIVE_INFINITY;
-        for (Trace trace : traceList)
+        for (int i=0; i<providers.length; i++)
         {
-            if (trace.getDataProvider() == null)
+            final IDataProvider provider = providers[i];
+            if (provider == null)
                 continue;
             final Range range;
-            if (isHorizontal())
-                range = trace.getDataProvider().getXDataMinMax();
+            if (horizontal)
+                range = provider.getXDataMinMax();
+            else if (xRanges != null && xRanges[i] != null)
+                range = DataRangeUtil.getYDataMinMax(provider, xRanges[i]);
             else
-                range = trace.getDataProvider().getYDataMinMax();
+                range = provider.getYDataMinMax();
             if (range == null)
                 continue;
             if (Double.isInfinite(range.getLower())
@@ -243,7 +312,7 @@ public class Axis extends LinearScale{
             return null;
         return new Range(low, high);
     }
-	
+
 	/** Perform an auto-scale:
 	 *  Axis limits are set to the value range of the traces on this axis.
 	 *  Includes some optimization:
@@ -258,43 +327,57 @@ public class Axis extends LinearScale{
 	 *  @see #autoScaleThreshold
 	 */
 	public boolean performAutoScale(final boolean force){
-		if((force || autoScale) && traceList.size() >0){
-		    // Get range of data in all traces
-            final Range range = getTraceDataRange();
-            if (range == null)
-                return false;
-			double tempMin = range.getLower();
-			double tempMax = range.getUpper();
-			
-			// Get current axis range, determine how 'different' they are
-			final double max = getRange().getUpper();
-			final double min = getRange().getLower();
-			final double thr = (max - min)*autoScaleThreshold;
-    		
-    		//if both the changes are lower than threshold, return
-    		if(((tempMin - min)>=0 && (tempMin - min)<thr)
-    				&& ((max - tempMax)>=0 && (max - tempMax)<thr)){
-    			return false;
-    		}else { //expand more space than needed
-    			if((tempMin - min)<0)
-    				tempMin -= thr; 
-    			if((tempMax - max) > 0)
-    				tempMax += thr;
-    		}
-
-    		// Any change at all?
-    		if((tempMin == min && tempMax == max) || 
-    				Double.isInfinite(tempMin) || Double.isInfinite(tempMax) ||
-    				Double.isNaN(tempMin) || Double.isNaN(tempMax))
-    			return false;
-    		
-    		// Update axis
-    		setRange(tempMin, tempMax);
-    		repaint();
-    		return true;
-		}
+		if(needsAutoScale(force))
+			return applyAutoScale(getTraceDataRange());
 		return false;
 	}
+
+	/**
+	 * @param force if true, the autoScale field is ignored.
+	 * @return true if {@link #performAutoScale(boolean)} would auto-scale the axis.
+	 */
+	boolean needsAutoScale(final boolean force) {
+		return (force || autoScale) && traceList.size() > 0;
+	}
+
+	/**Second half of {@link #performAutoScale(boolean)}: set the axis limits
+	 * to a range of the trace data, unless it would be a minor adjustment.
+	 * @param range the range of the trace data, may be <code>null</code>.
+	 * @return true if the axis is repainted due to range change.
+	 */
+	boolean applyAutoScale(final Range range){
+		if (range == null)
+			return false;
+		double tempMin = range.getLower();
+		double tempMax = range.getUpper();
+		
+		// Get current axis range, determine how 'different' they are
+		final double max = getRange().getUpper();
+		final double min = getRange().getLower();
+		final double thr = (max - min)*autoScaleThreshold;
+		
+		//if both the changes are lower than threshold, return
+		if(((tempMin - min)>=0 && (tempMin - min)<thr)
+				&& ((max - tempMax)>=0 && (max - tempMax)<thr)){
+			return false;
+		}else { //expand more space than needed
+			if((tempMin - min)<0)
+				tempMin -= thr; 
+			if((tempMax - max) > 0)
+				tempMax += thr;
+		}
+
+		// Any change at all?
+		if((tempMin == min && tempMax == max) || 
+				Double.isInfinite(tempMin) || Double.isInfinite(tempMax) ||
+				Double.isNaN(tempMin) || Double.isNaN(tempMax))
+			return false;
+		
+		// Update axis
+		setRange(tempMin, tempMax);
+		repaint();
+		return true;
+	}
 	
 	/**Add a trace to the axis.
 	 * @param trace the trace to be added.
@@ -346,6 +429,24 @@ public class Axis extends LinearScale{
 		performAutoScale(false);
 	}
 
+	/**
+	 * @return true if the auto-scale of this y axis only fits the data
+	 * inside the current range of the x axis of each trace.
+	 */
+	public boolean isAutoScaleVisibleData() {
+		return autoScaleVisibleData;
+	}
+
+	/**If true, the auto-scale of this y axis only fits the data inside the
+	 * current range of the x axis of each trace, and the axis is auto-scaled
+	 * whenever such an x axis changes its range. It has no effect on an x axis.
+	 * @param autoScaleVisibleData the autoScaleVisibleData to set
+	 */
+	public void setAutoScaleVisibleData(final boolean autoScaleVisibleData) {
+		this.autoScaleVisibleData = autoScaleVisibleData;
+		performAutoScale(false);
+	}
+
 	/**
 	 * @return the showMajorGrid
 	 */
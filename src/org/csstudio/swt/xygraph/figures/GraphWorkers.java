@@ -0,0 +1,63 @@
+package org.csstudio.swt.xygraph.figures;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * The threads of all XY Graphs which compute the data ranges of auto-scaled axes
+ * and prepare the geometry of traces. They are started when they are first needed
+ * and stopped when the display on which they were started is disposed, or by
+ * {@link #dispose()}.
+ */
+public final class GraphWorkers {
+
+	/** The threads, or null if they are not started */
+	private static ExecutorService workers;
+
+	/** The last display which stops the threads when it is disposed */
+	private static Display disposingDisplay;
+
+	private GraphWorkers() {
+	}
+
+	/**Run a task on the threads, starting them if needed.
+	 * @param display the display of the graph, which stops the threads when it is disposed,
+	 * or null if the task is not run for a graph on the UI thread.
+	 * @param task the task.
+	 */
+	static synchronized void execute(final Display display, final Runnable task) {
+		if(workers == null){
+			workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+					new ThreadFactory(){
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "XYGraph Worker"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		// registered once per display, which also covers threads started again after dispose()
+		if(display != null && display != disposingDisplay && !display.isDisposed()){
+			display.disposeExec(new Runnable(){
+				public void run() {
+					dispose();
+				}
+			});
+			disposingDisplay = display;
+		}
+		workers.execute(task);
+	}
+
+	/**Stop the threads after the tasks they already have. They are started again
+	 * when a graph needs them.
+	 */
+	public static synchronized void dispose() {
+		if(workers == null)
+			return;
+		workers.shutdown();
+		workers = null;
+	}
+}
@@ -0,0 +1,169 @@
+package org.csstudio.swt.xygraph.figures;
+
+import java.util.List;
+
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.linearscale.ScaleTransform;
+
+/**
+ * A grid of buckets over the screen positions of the visible samples of a trace,
+ * to find the sample nearest to a position without checking every sample.
+ */
+class HotSampleIndex {
+
+	/** Width and height of a bucket in pixels, if there are not too many buckets */
+	private static final int CELL_SIZE = 16;
+
+	private final List<ISample> samples;
+
+	/** Number of samples in the index, because samples may be added to the list later */
+	private final int count;
+
+	private final ScaleTransform xTransform;
+
+	private final ScaleTransform yTransform;
+
+	/** Screen positions of the samples */
+	private final int[] xPositions, yPositions;
+
+	/** Position of the first bucket and size of the buckets */
+	private int left, top, cellSize;
+
+	private int columns, rows;
+
+	/** Indices of the samples, sorted by bucket */
+	private int[] sampleIndices;
+
+	/** Start of each bucket in sampleIndices, plus the end of the last bucket */
+	private int[] cellStarts;
+
+	/**
+	 * @param samples the visible samples.
+	 * @param xTransform the transform of the x axis.
+	 * @param yTransform the transform of the y axis.
+	 */
+	HotSampleIndex(final List<ISample> samples, final ScaleTransform xTransform,
+			final ScaleTransform yTransform) {
+		this.samples = samples;
+		this.count = samples.size();
+		this.xTransform = xTransform;
+		this.yTransform = yTransform;
+		final double[] xValues = new double[count];
+		final double[] yValues = new double[count];
+		for(int i=0; i<count; i++){
+			final ISample sample = samples.get(i);
+			xValues[i] = sample.getXValue();
+			yValues[i] = sample.getYValue();
+		}
+		xPositions = new int[count];
+		yPositions = new int[count];
+		xTransform.valuesToPositions(xValues, xPositions, count);
+		yTransform.valuesToPositions(yValues, yPositions, count);
+		if(count > 0)
+			buildBuckets();
+	}
+
+	private void buildBuckets() {
+		int right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+		left = Integer.MAX_VALUE;
+		top = Integer.MAX_VALUE;
+		for(int i=0; i<count; i++){
+			left = Math.min(left, xPositions[i]);
+			right = Math.max(right, xPositions[i]);
+			top = Math.min(top, yPositions[i]);
+			bottom = Math.max(bottom, yPositions[i]);
+		}
+		final long width = (long)right - left + 1;
+		final long height = (long)bottom - top + 1;
+		// Not many more buckets than samples
+		cellSize = CELL_SIZE;
+		while((width/cellSize + 1) * (height/cellSize + 1) > 4L*count + 16)
+			cellSize *= 2;
+		columns = (int) ((width - 1)/cellSize + 1);
+		rows = (int) ((height - 1)/cellSize + 1);
+		// Sort the samples into the buckets by counting them first
+		cellStarts = new int[columns*rows + 1];
+		final int[] cells = new int[count];
+		for(int i=0; i<count; i++){
+			cells[i] = getCell(xPositions[i], yPositions[i]);
+			cellStarts[cells[i] + 1]++;
+		}
+		for(int c=0; c<columns*rows; c++)
+			cellStarts[c + 1] += cellStarts[c];
+		final int[] next = new int[columns*rows];
+		System.arraycopy(cellStarts, 0, next, 0, next.length);
+		sampleIndices = new int[count];
+		for(int i=0; i<count; i++)
+			sampleIndices[next[cells[i]]++] = i;
+	}
+
+	private int getCell(final int x, final int y) {
+		return getRow(y) * columns + getColumn(x);
+	}
+
+	private int getColumn(final int x) {
+		return (int) Math.max(0, Math.min(columns - 1, ((long)x - left) / cellSize));
+	}
+
+	private int getRow(final int y) {
+		return (int) Math.max(0, Math.min(rows - 1, ((long)y - top) / cellSize));
+	}
+
+	/**
+	 * @param samples the current visible samples.
+	 * @param xTransform the current transform of the x axis.
+	 * @param yTransform the current transform of the y axis.
+	 * @return true if the index still holds all samples at their current positions.
+	 */
+	boolean isIndexOf(final List<ISample> samples, final ScaleTransform xTransform,
+			final ScaleTransform yTransform) {
+		return this.samples == samples && count == samples.size() &&
+			this.xTransform.equals(xTransform) && this.yTransform.equals(yTransform);
+	}
+
+	/**
+	 * @param x the x position in pixels.
+	 * @param y the y position in pixels.
+	 * @return the sample nearest to the position, or null if there are no samples.
+	 */
+	ISample getNearest(final int x, final int y) {
+		if(count == 0)
+			return null;
+		final int column = getColumn(x);
+		final int row = getRow(y);
+		int nearest = -1;
+		long nearestDistance = Long.MAX_VALUE;
+		// Search rings of buckets around the bucket of the position. Samples in
+		// ring r+1 and beyond are at least r buckets away from the position.
+		final int maxRing = Math.max(columns, rows);
+		for(int ring=0; ring<=maxRing; ring++){
+			for(int r=row-ring; r<=row+ring; r++){
+				if(r < 0 || r >= rows)
+					continue;
+				final boolean edgeRow = r == row-ring || r == row+ring;
+				for(int c=column-ring; c<=column+ring; c += edgeRow ? 1 : 2*ring){
+					if(c >= 0 && c < columns){
+						final int cell = r*columns + c;
+						for(int i=cellStarts[cell]; i<cellStarts[cell + 1]; i++){
+							final int index = sampleIndices[i];
+							final long dx = xPositions[index] - x;
+							final long dy = yPositions[index] - y;
+							final long distance = dx*dx + dy*dy;
+							if(distance < nearestDistance ||
+									(distance == nearestDistance && index < nearest)){
+								nearestDistance = distance;
+								nearest = index;
+							}
+						}
+					}
+					if(ring == 0)
+						break;
+				}
+			}
+			final long reach = (long)ring * cellSize;
+			if(nearest >= 0 && nearestDistance <= reach*reach)
+				break;
+		}
+		return samples.get(nearest);
+	}
+}
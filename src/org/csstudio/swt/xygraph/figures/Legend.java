@@ -5,7 +5,6 @@ import java.util.List;
 
 import org.csstudio.swt.xygraph.Preferences;
 import org.csstudio.swt.xygraph.util.XYGraphMediaFactory;
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.RectangleFigure;
 import org.eclipse.draw2d.geometry.Dimension;
@@ -73,7 +72,7 @@ public class Legend extends RectangleFigure {
 		int i=0;
 		for(Trace trace : traceList){
 			int hwidth = OUT_GAP + ICON_WIDTH + INNER_GAP +  
-					+ FigureUtilities.getTextExtents(trace.getName(), getFont()).width;
+					+ XYGraphMediaFactory.getInstance().getTextExtents(trace.getName(), getFont()).width;
 			int hEnd = hPos + hwidth;
 			if(hEnd	> (bounds.x + bounds.width) && i>0){
 				hPos= bounds.x + INNER_GAP;
@@ -127,7 +126,7 @@ public class Legend extends RectangleFigure {
 		//draw text
 		graphics.drawText(trace.getName(), hPos+ICON_WIDTH + INNER_GAP, 
 				vPos + ICON_WIDTH/2 -  
-				FigureUtilities.getTextExtents(trace.getName(), getFont()).height/2);
+				XYGraphMediaFactory.getInstance().getTextExtents(trace.getName(), getFont()).height/2);
 		graphics.popState();
 	}
 	
@@ -139,11 +138,11 @@ public class Legend extends RectangleFigure {
 		int i=0;
 		for(Trace trace : traceList){
 			hEnd = hEnd + OUT_GAP + ICON_WIDTH + INNER_GAP +  
-					+ FigureUtilities.getTextExtents(trace.getName(), getFont()).width;
+					+ XYGraphMediaFactory.getInstance().getTextExtents(trace.getName(), getFont()).width;
 			
 			if(hEnd	> wHint){
 				hEnd= INNER_GAP + OUT_GAP + ICON_WIDTH + INNER_GAP +  
-					+ FigureUtilities.getTextExtents(trace.getName(), getFont()).width;
+					+ XYGraphMediaFactory.getInstance().getTextExtents(trace.getName(), getFont()).width;
 				height += ICON_WIDTH + INNER_GAP;				
 			}	
 			if(maxWidth < hEnd) 
@@ -0,0 +1,137 @@
+package org.csstudio.swt.xygraph.figures;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Collects the traces of an XY Graph whose data changed and refreshes them
+ * at most once per frame: every axis of these traces is auto-scaled once,
+ * and the plot area is repainted once. Traces which prepare their geometry
+ * on a background thread repaint themselves when it is ready.
+ * <p>
+ * Data providers may notify their traces from any thread.
+ * The refresh always runs on the UI thread of the graph.
+ */
+class RefreshScheduler {
+
+	/** Default for the maximum number of frames per second */
+	public static final int DEFAULT_MAX_FRAME_RATE = 25;
+
+	private final XYGraph xyGraph;
+
+	/** Traces to refresh in the next frame, guarded by <code>this</code> */
+	private final Set<Trace> dirtyTraces = new LinkedHashSet<Trace>();
+
+	/** Is the next frame scheduled? Guarded by <code>this</code> */
+	private boolean scheduled = false;
+
+	/** Time of the last frame in milliseconds, only used on the UI thread */
+	private long lastFrame = 0;
+
+	private volatile int maxFrameRate = DEFAULT_MAX_FRAME_RATE;
+
+	/** Display of the graph, taken on the UI thread when the graph is created or a trace changes */
+	private volatile Display display;
+
+	private final Runnable refresh = new Runnable(){
+		public void run() {
+			refresh();
+		}
+	};
+
+	RefreshScheduler(final XYGraph xyGraph) {
+		this.xyGraph = xyGraph;
+		display = Display.getCurrent();
+	}
+
+	/**
+	 * @param maxFrameRate the maximum number of refreshes per second.
+	 */
+	public void setMaxFrameRate(final int maxFrameRate) {
+		if(maxFrameRate <= 0)
+			throw new IllegalArgumentException("The frame rate must be positive."); //$NON-NLS-1$
+		this.maxFrameRate = maxFrameRate;
+	}
+
+	/**
+	 * @return the maximum number of refreshes per second.
+	 */
+	public int getMaxFrameRate() {
+		return maxFrameRate;
+	}
+
+	/**Refresh a trace in the next frame. May be called from any thread.
+	 * @param trace the trace whose data changed.
+	 * @param delay the minimum time in milliseconds until the refresh,
+	 * if this starts a new frame.
+	 */
+	public void traceChanged(final Trace trace, final int delay) {
+		final Display current = Display.getCurrent();
+		if(current != null)
+			display = current;
+		synchronized (this) {
+			dirtyTraces.add(trace);
+			if(scheduled)
+				return;
+			scheduled = true;
+		}
+		if(current != null)
+			schedule(current, delay);
+		else{ // timers can only be started on the UI thread
+			final Display uiDisplay = display;
+			if(uiDisplay == null || uiDisplay.isDisposed()){
+				// the trace is refreshed with the next change on the UI thread
+				synchronized (this) {
+					scheduled = false;
+				}
+				return;
+			}
+			uiDisplay.asyncExec(new Runnable(){
+				public void run() {
+					schedule(uiDisplay, delay);
+				}
+			});
+		}
+	}
+
+	/** Start the timer for the next frame on the UI thread */
+	private void schedule(final Display display, final int delay) {
+		final long wait = Math.max(delay,
+				lastFrame + 1000 / maxFrameRate - System.currentTimeMillis());
+		if(wait > 0)
+			display.timerExec((int) wait, refresh);
+		else
+			display.asyncExec(refresh);
+	}
+
+	/** Auto-scale the axes of all changed traces and repaint them */
+	private void refresh() {
+		final Trace[] traces;
+		synchronized (this) {
+			traces = dirtyTraces.toArray(new Trace[dirtyTraces.size()]);
+			dirtyTraces.clear();
+			scheduled = false;
+		}
+		lastFrame = System.currentTimeMillis();
+		final Set<Axis> axes = new LinkedHashSet<Axis>();
+		for(Trace trace : traces){
+			axes.add(trace.getXAxis());
+			axes.add(trace.getYAxis());
+		}
+		final Set<Axis> rescaled = AutoScaler.autoScale(axes, false);
+		boolean repaint = false;
+		for(Trace trace : traces){
+			// an axis which changed its range repaints its traces anyway
+			final boolean xRepainted = rescaled.contains(trace.getXAxis());
+			final boolean yRepainted = rescaled.contains(trace.getYAxis());
+			// a trace which prepares its geometry in the background repaints itself
+			final boolean prepared = trace.prepareGeometry();
+			if(!xRepainted && !yRepainted && !prepared)
+				repaint = true;
+		}
+		if(repaint)
+			xyGraph.getPlotArea().repaint();
+	}
+}
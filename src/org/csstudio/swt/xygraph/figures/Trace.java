@@ -1,21 +1,33 @@
 package org.csstudio.swt.xygraph.figures;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.csstudio.swt.xygraph.Preferences;
+import org.csstudio.swt.xygraph.dataprovider.AbstractDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider;
 import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
 import org.csstudio.swt.xygraph.dataprovider.IDataProviderListener;
+import org.csstudio.swt.xygraph.dataprovider.IDecimatingDataProvider;
 import org.csstudio.swt.xygraph.dataprovider.ISample;
 import org.csstudio.swt.xygraph.dataprovider.Sample;
 import org.csstudio.swt.xygraph.linearscale.Range;
+import org.csstudio.swt.xygraph.linearscale.ScaleTransform;
 import org.csstudio.swt.xygraph.linearscale.AbstractScale.LabelSide;
+import org.csstudio.swt.xygraph.util.LineClipper;
+import org.csstudio.swt.xygraph.util.XYGraphMediaFactory;
 import org.eclipse.draw2d.Figure;
 import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.SWTGraphics;
 import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Display;
 
@@ -34,6 +46,15 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
      */
     final private static boolean use_advanced_graphics = Preferences.useAdvancedGraphics();
     
+    /** Number of samples read from the data provider at once while painting */
+    final private static int VALUE_BUFFER_SIZE = 1024;
+    
+    /** Maximum number of points in one polyline */
+    final private static int POLYLINE_SIZE = 1024;
+    
+    /** Only decimate when there are more than this many samples per pixel column */
+    final private static int DECIMATION_THRESHOLD = 4;
+    
     
 	
 	/** The way how the trace will be drawn.
@@ -198,6 +219,32 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 	
 	private List<ISample> hotSampleist;
 	
+	/** Index of the screen positions of the hot samples, built when it is first needed */
+	private HotSampleIndex hotSampleIndex;
+	
+	/** Paints the trace on the UI thread */
+	final private SamplePainter painter = new SamplePainter();
+	
+	/** Paint the trace into cachedImage and only paint the new part when scrolling? */
+	private boolean imageCaching = false;
+	/** The painted trace, where the background color is transparent */
+	private Image cachedImage;
+	/** Everything but the x range which decides how cachedImage looks */
+	private List<Object> cachedImageKey;
+	/** X value at the left edge of cachedImage, and the x range width */
+	private double cachedXLower, cachedXSpan;
+	/** First and last sample which were in the data when cachedImage was painted */
+	private double cachedFirstX, cachedLastX, cachedLastY;
+	
+	/** Prepare the geometry of the trace on a background thread? */
+	private boolean backgroundPreparation = false;
+	/** The last prepared geometry, only used on the UI thread */
+	private TraceGeometry preparedGeometry;
+	/** Is a geometry being prepared, and is another one requested? Only used on the UI thread */
+	private boolean preparing = false, preparePending = false;
+	/** Range of the x axis in the last paint, to tell whether it is moving */
+	private Range paintedXRange;
+	
 	public Trace(String name, Axis xAxis, Axis yAxis, IDataProvider dataProvider) {
 		this.setName(name);
 		this.xAxis = xAxis;
@@ -210,108 +257,25 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 		hotSampleist = new ArrayList<ISample>();
 	}
 	
-	
-	private void drawErrorBar(Graphics graphics, Point dpPos, ISample dp){
-		graphics.pushState();
-		graphics.setForegroundColor(errorBarColor);
-		graphics.setLineStyle(SWT.LINE_SOLID);
-		graphics.setLineWidth(1);
-		Point ep;
-		switch (yErrorBarType) {
-		case BOTH:
-		case MINUS:
-			ep = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-				yAxis.getValuePosition(dp.getYValue() - dp.getYMinusError(), false));
-			graphics.drawLine(dpPos, ep);
-			graphics.drawLine(ep.x - errorBarCapWidth/2, ep.y, ep.x + errorBarCapWidth/2, ep.y);
-			if(yErrorBarType != ErrorBarType.BOTH)
-			break;
-		case PLUS:
-			ep = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-				yAxis.getValuePosition(dp.getYValue() + dp.getYPlusError(), false));
-			graphics.drawLine(dpPos, ep);
-			graphics.drawLine(ep.x - errorBarCapWidth/2, ep.y, ep.x + errorBarCapWidth/2, ep.y);
-			break;			
-		default:
-			break;
-		}
-		
-		switch (xErrorBarType) {
-		case BOTH:
-		case MINUS:
-			ep = new Point(xAxis.getValuePosition(dp.getXValue() - dp.getXMinusError(), false),
-				yAxis.getValuePosition(dp.getYValue(), false));
-			graphics.drawLine(dpPos, ep);
-			graphics.drawLine(ep.x, ep.y  - errorBarCapWidth/2, ep.x, ep.y + errorBarCapWidth/2);
-			if(xErrorBarType != ErrorBarType.BOTH)
-			break;
-		case PLUS:
-			ep = new Point(xAxis.getValuePosition(dp.getXValue() + dp.getXPlusError(), false),
-				yAxis.getValuePosition(dp.getYValue(), false));
-			graphics.drawLine(dpPos, ep);
-			graphics.drawLine(ep.x , ep.y - errorBarCapWidth/2, ep.x, ep.y + errorBarCapWidth/2);
-			break;			
-		default:
-			break;
-		}
-		
-		graphics.popState();
-	}
-	
-	
-	private void drawYErrorArea(Graphics graphics, ISample predp, ISample dp, Point predpPos, Point dpPos){
-		graphics.pushState();
-		Color lighter = null;
-		if (use_advanced_graphics)
-		{
-	        graphics.setBackgroundColor(errorBarColor);
-		    graphics.setAlpha(areaAlpha);
-		}
-		else
-		{
-	        final float[] hsb = errorBarColor.getRGB().getHSB();
-		    lighter = new Color(Display.getCurrent(),
-	                new RGB(hsb[0], hsb[1]*areaAlpha/255, 1.0f));
-            graphics.setBackgroundColor(lighter);
-		}
-		Point preEp, ep;
-		switch (yErrorBarType) {
-		case BOTH:
-		case PLUS:
-			preEp = new Point(xAxis.getValuePosition(predp.getXValue(), false),
-				yAxis.getValuePosition(predp.getYValue() + predp.getYPlusError(), false));
-			ep = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-				yAxis.getValuePosition(dp.getYValue() + dp.getYPlusError(), false));
-			graphics.fillPolygon(new int[]{predpPos.x, predpPos.y,
-					preEp.x, preEp.y, ep.x, ep.y, dpPos.x, dpPos.y});
-			if(yErrorBarType != ErrorBarType.BOTH)
-				break;
-		case MINUS:
-			preEp = new Point(xAxis.getValuePosition(predp.getXValue(), false),
-				yAxis.getValuePosition(predp.getYValue() - predp.getYMinusError(), false));
-			ep = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-				yAxis.getValuePosition(dp.getYValue() - dp.getYMinusError(), false));
-			graphics.fillPolygon(new int[]{predpPos.x, predpPos.y,
-					preEp.x, preEp.y, ep.x, ep.y, dpPos.x, dpPos.y});
-			break;
-		default:
-			break;
-		}
-		graphics.popState();
-		if (lighter != null)
-		    lighter.dispose();
-	}
-	
 	/**Draw point with the pointStyle and size of the trace;
 	 * @param graphics
 	 * @param pos
 	 */
 	public void drawPoint(Graphics graphics, Point pos){
+		drawPoint(graphics, pos, traceColor);
+	}
+
+	/**Draw point with the pointStyle and size of the trace, filled in a color.
+	 * @param graphics
+	 * @param pos
+	 * @param fillColor
+	 */
+	private void drawPoint(Graphics graphics, Point pos, Color fillColor){
 	    // Shortcut when no point requested
 	    if (pointStyle == PointStyle.NONE)
 	        return;
 		graphics.pushState();
-		graphics.setBackgroundColor(traceColor);
+		graphics.setBackgroundColor(fillColor);
 		//graphics.setForegroundColor(traceColor);
 		graphics.setLineWidth(1);
 		graphics.setLineStyle(SWT.LINE_SOLID);
@@ -380,6 +344,56 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 		}
 		graphics.popState();
 	}
+
+	/**Get the image of the point of the trace, which is stamped instead of drawing
+	 * every point. It is rendered once per point style, size, color and anti-aliasing,
+	 * so it follows the anti-aliasing the graphics currently uses. The media factory
+	 * disposes it when it is no longer recently used, so it is fetched for each paint.
+	 * @param graphics the graphics to stamp the point on.
+	 * @return the image, or null if the point must be drawn, e.g. on zoomed or printed graphics.
+	 */
+	private Image getPointImage(final Graphics graphics)
+	{
+		final Display display = Display.getCurrent();
+		if (pointStyle == PointStyle.NONE || display == null || graphics.getAbsoluteScale() != 1)
+			return null;
+		final int antialias = graphics.getAntialias();
+		final RGB rgb = traceColor.getRGB();
+		final String key = "xygraph.point." + pointStyle + "." + pointSize + "." //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			+ rgb.red + "." + rgb.green + "." + rgb.blue + "." + antialias; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		final XYGraphMediaFactory factory = XYGraphMediaFactory.getInstance();
+		final Image image = factory.getAlphaImage(key);
+		if (image != null)
+			return image;
+		// Draw the point in white on black, which becomes the alpha of the image
+		final int size = 2 * getPointImageCenter() + 1;
+		final Image mask = new Image(display, size, size);
+		final GC gc = new GC(mask);
+		final SWTGraphics maskGraphics = new SWTGraphics(gc);
+		try
+		{
+			maskGraphics.setBackgroundColor(display.getSystemColor(SWT.COLOR_BLACK));
+			maskGraphics.fillRectangle(0, 0, size, size);
+			if (antialias != SWT.DEFAULT)
+				maskGraphics.setAntialias(antialias);
+			final Color white = display.getSystemColor(SWT.COLOR_WHITE);
+			maskGraphics.setForegroundColor(white);
+			drawPoint(maskGraphics, new Point(getPointImageCenter(), getPointImageCenter()), white);
+			return factory.registerAlphaImage(key, mask.getImageData(), rgb);
+		}
+		finally
+		{
+			maskGraphics.dispose();
+			gc.dispose();
+			mask.dispose();
+		}
+	}
+
+	/** @return position of the point in its image, with a margin for the line width and anti-aliasing */
+	private int getPointImageCenter()
+	{
+		return pointSize/2 + 2;
+	}
 	
 	/**Draw line with the line style and line width of the trace.
 	 * @param graphics
@@ -449,312 +463,1147 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 	@Override
 	protected void paintFigure(Graphics graphics) {
 		super.paintFigure(graphics);
+		if(traceDataProvider == null)
+			throw new RuntimeException("No DataProvider defined for trace: " + name); //$NON-NLS-1$
+		if(imageCaching && getBackgroundColor() != null){
+			paintCachedImage(graphics);
+			return;
+		}
+		if(backgroundPreparation && isPreparable()){
+			final Range xRange = xAxis.getRange();
+			final boolean xMoving = !xRange.equals(paintedXRange);
+			paintedXRange = xRange;
+			final TraceGeometry geometry = preparedGeometry;
+			final int shift = geometry == null ? Integer.MIN_VALUE :
+				geometry.getShift(getAppearanceKey(), xAxis.getTransform());
+			if(shift != Integer.MIN_VALUE){
+				hotSampleist = geometry.hotSamples;
+				paintGeometry(graphics, geometry, shift);
+				// Scrolled: prepare the new range once the running preparation is done,
+				// whose geometry is moved into place when it arrives
+				if(!geometry.matches(xRange) && !preparing)
+					prepareGeometry();
+				return;
+			}
+			// Zoomed, resized or restyled: paint now, and prepare for the next paint,
+			// unless the x range keeps changing and the geometry would be outdated
+			if(!xMoving)
+				prepareGeometry();
+		}
+		hotSampleist = new ArrayList<ISample>();
+		painter.paintSamples(graphics, null, 0, hotSampleist);
+	}
+	
+	/** @return true if the geometry of the trace can be prepared in the background */
+	private boolean isPreparable()
+	{
+		return (isPolylineType(traceType) || traceType == TraceType.POINT) &&
+			!(errorBarEnabled && drawYErrorInArea);
+	}
+	
+	/** Prepare the geometry of the trace on a background thread,
+	 *  then repaint the trace with it.
+	 *  Must be called on the UI thread, which copies the style and the visible
+	 *  values of the trace, so the preparation neither locks the data provider
+	 *  nor shares any buffers with the UI thread.
+	 *  @return false if the geometry of the trace is not prepared in the background
+	 */
+	boolean prepareGeometry()
+	{
+		if (!backgroundPreparation || !isPreparable() || !isVisible() || traceDataProvider == null)
+			return false;
+		if (preparing)
+		{   // Prepare again when the current preparation is done
+			preparePending = true;
+			return true;
+		}
+		final Display display = Display.getCurrent();
+		if (display == null)
+			return false;
+		final TraceGeometry geometry = new TraceGeometry(getAppearanceKey(),
+				xAxis.getTransform(), yAxis.getTransform(),
+				xAxis.getTickLablesSide() == LabelSide.Primary);
+		painter.copyValues(geometry);
+		preparing = true;
+		GraphWorkers.execute(display, new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					new SamplePainter().paintSamples(null, geometry, 0, geometry.hotSamples);
+				}
+				finally
+				{
+					if (!display.isDisposed())
+						display.asyncExec(new Runnable()
+						{
+							public void run()
+							{
+								geometryPrepared(geometry);
+							}
+						});
+				}
+			}
+		});
+		return true;
+	}
+	
+	/** Called on the UI thread when a geometry was prepared */
+	private void geometryPrepared(final TraceGeometry geometry)
+	{
+		preparing = false;
+		if (backgroundPreparation && geometry.complete)
+		{
+			preparedGeometry = geometry;
+			repaint();
+		}
+		if (preparePending)
+		{
+			preparePending = false;
+			prepareGeometry();
+		}
+	}
+	
+	/** Draw a prepared geometry
+	 *  @param shift Number of pixels to move the geometry along the x axis
+	 */
+	private void paintGeometry(final Graphics graphics, final TraceGeometry geometry, final int shift)
+	{
 		graphics.pushState();
+		if (shift != 0)
+		{
+			if (xAxis.isHorizontal())
+				graphics.translate(shift, 0);
+			else
+				graphics.translate(0, shift);
+		}
 		if (use_advanced_graphics)
 		    graphics.setAntialias(antiAliasing? SWT.ON : SWT.OFF);
 		graphics.setForegroundColor(traceColor);
 		graphics.setLineWidth(lineWidth);
-		ISample predp = null;
-		boolean predpInRange = false;
-		Point dpPos = null;
-		hotSampleist.clear();
-		if(traceDataProvider == null)
-			throw new RuntimeException("No DataProvider defined for trace: " + name); //$NON-NLS-1$
-		// Lock data provider to prevent changes while painting
-		synchronized (traceDataProvider)
-        {
-    		if(traceDataProvider.getSize()>0){
-    		    // Is only a sub-set of the trace data visible?
-    			final int startIndex, endIndex;
-    			if(traceDataProvider.isChronological()){
-    			    final Range indexRange = getIndexRangeOnXAxis();
-    				if(indexRange == null){
-    				    startIndex = 0;
-    					endIndex = -1;
-    				}else{
-    					startIndex = (int) indexRange.getLower();
-    					endIndex = (int) indexRange.getUpper();
-    				}
-    			}
-    			else
-    			{   // Cannot optimize range, use all data points
-    			    startIndex = 0;
-                    endIndex = traceDataProvider.getSize()-1;
-    			}
-    			for (int i=startIndex; i<=endIndex; i++)
-    			{
-    			    ISample dp = traceDataProvider.getSample(i);
-                    final boolean dpInXRange = xAxis.getRange().inRange(dp.getXValue());
-    				// Mark 'NaN' samples on X axis
-    				final boolean valueIsNaN = Double.isNaN(dp.getYValue());
-                    if (dpInXRange  &&  valueIsNaN)
-                    {
-    					Point markPos = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-    							yAxis.getValuePosition(xAxis.getTickLablesSide() == LabelSide.Primary?
-    									yAxis.getRange().getLower() : yAxis.getRange().getUpper(), false));
-    					graphics.setBackgroundColor(traceColor);
-    					graphics.fillRectangle(markPos.x -MARKER_SIZE/2, markPos.y - MARKER_SIZE/2, MARKER_SIZE, MARKER_SIZE);
-    					Sample nanSample = new Sample(dp.getXValue(),xAxis.getTickLablesSide() == LabelSide.Primary?
-    							yAxis.getRange().getLower() : yAxis.getRange().getUpper(),
-    							dp.getYPlusError(), dp.getYMinusError(),
-    							Double.NaN, dp.getXMinusError(), dp.getInfo());
-    					hotSampleist.add(nanSample);
-    				}
-    				// Is data point in the plot area?
-                    boolean dpInRange = dpInXRange &&
-                                        yAxis.getRange().inRange(dp.getYValue());
-    				//draw point
-    				if(dpInRange){
-    					dpPos = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-    							yAxis.getValuePosition(dp.getYValue(), false));
-    					hotSampleist.add(dp);
-    					drawPoint(graphics, dpPos);
-    					if(errorBarEnabled && !drawYErrorInArea)
-    						drawErrorBar(graphics, dpPos, dp);
-    				}
-    				if(traceType == TraceType.POINT && !drawYErrorInArea)
-    					continue; // no need to draw line			
-    				
-    				//draw line
-    				if(traceType == TraceType.BAR){
-    					switch (baseLine) {
-    					case NEGATIVE_INFINITY:
-    						predp = new Sample(dp.getXValue(), yAxis.getRange().getLower());
-    						break;
-    					case POSITIVE_INFINITY:
-    						predp = new Sample(dp.getXValue(), yAxis.getRange().getUpper());
-    						break;
-    					default:
-    						predp = new Sample(dp.getXValue(), 0);
-    						break;
-    					}
-    					predpInRange = xAxis.getRange().inRange(predp.getXValue()) && yAxis.getRange().inRange(predp.getYValue());
-    				}
-    				if(predp == null)
-    				{   // No previous data point from which to draw a line
-    					predp = dp;
-    					predpInRange = dpInRange;
-    					continue;
-    				}
-    				
-    				// Save original dp info because handling of NaN or
-    				// axis intersections might patch it
-    				final ISample origin_dp = dp; 
-    				final boolean origin_dpInRange = dpInRange;
-
-    				// In 'STEP' modes, if there was a value, now there is none,
-    				// continue that last value until the NaN location
-    				if (valueIsNaN  &&  !Double.isNaN(predp.getYValue()) &&
-                        (traceType == TraceType.STEP_HORIZONTALLY  ||
-                         traceType == TraceType.STEP_VERTICALLY))
-                    {   // Patch 'y' of dp, re-compute dpInRange for new 'y'
-    				    dp = new Sample(dp.getXValue(), predp.getYValue());
-    				    dpInRange = yAxis.getRange().inRange(dp.getYValue());
-                    }
-    				
-    				if(traceType != TraceType.AREA)
-    				{
-    				    if(!predpInRange && !dpInRange){ //both are out of plot area
-    						ISample[] dpTuple = getIntersection(predp, dp);
-    						if(dpTuple[0] == null || dpTuple[1] == null){ // no intersection with plot area
-    							predp = origin_dp;
-    							predpInRange = origin_dpInRange;
-    							continue;
-    						}else{
-    							predp = dpTuple[0];
-    							dp = dpTuple[1];
-    						}
-    					}else if(!predpInRange || !dpInRange){ // one in and one out
-    						//calculate the intersection point with the boundary of plot area.
-    						if(!predpInRange){
-    							predp = getIntersection(predp, dp)[0];
-    							if(predp == null){ // no intersection
-    								predp = origin_dp;
-    								predpInRange = origin_dpInRange;
-    								continue;
-    							}
-    						}else{
-    							dp = getIntersection(predp, dp)[0];
-    							if(dp == null){ // no intersection
-    								predp = origin_dp;
-    								predpInRange = origin_dpInRange;
-    								continue;
-    							}
-    						}
-    					}
-    				}
-    				
-    				final Point predpPos = new Point(xAxis.getValuePosition(predp.getXValue(), false),
-    								yAxis.getValuePosition(predp.getYValue(), false));
-    				dpPos = new Point(xAxis.getValuePosition(dp.getXValue(), false),
-    								yAxis.getValuePosition(dp.getYValue(), false));
-    						
-    				if(!dpPos.equals(predpPos)){
-    					if(errorBarEnabled && drawYErrorInArea && traceType!=TraceType.BAR)
-    						drawYErrorArea(graphics, predp, dp, predpPos, dpPos);
-    					drawLine(graphics, predpPos, dpPos);
-    				}
-    				
-    				predp = origin_dp;
-    				predpInRange = origin_dpInRange;
-    			}			
-    		}
-        }
+		graphics.setLineStyle(traceType == TraceType.DASH_LINE ? SWT.LINE_DASH : SWT.LINE_SOLID);
+		for (int[] polyline : geometry.polylines)
+			graphics.drawPolyline(polyline);
+		graphics.setBackgroundColor(traceColor);
+		for (int i=0; i<geometry.nanMarkersLength; i+=2)
+			graphics.fillRectangle(geometry.nanMarkers[i] - MARKER_SIZE/2,
+					geometry.nanMarkers[i+1] - MARKER_SIZE/2, MARKER_SIZE, MARKER_SIZE);
+		final Image pointImage = getPointImage(graphics);
+		final int pointImageCenter = getPointImageCenter();
+		for (int i=0; i<geometry.pointsLength; i+=2)
+			if (pointImage != null)
+				graphics.drawImage(pointImage, geometry.points[i] - pointImageCenter,
+						geometry.points[i+1] - pointImageCenter);
+			else
+				drawPoint(graphics, new Point(geometry.points[i], geometry.points[i+1]));
+		if (geometry.errorBarLinesLength > 0)
+		{
+			graphics.setForegroundColor(errorBarColor);
+			graphics.setLineStyle(SWT.LINE_SOLID);
+			graphics.setLineWidth(1);
+			final int[] lines = geometry.errorBarLines;
+			for (int i=0; i<geometry.errorBarLinesLength; i+=4)
+				graphics.drawLine(lines[i], lines[i+1], lines[i+2], lines[i+3]);
+		}
 		graphics.popState();
 	}
 	
-	
-	/** Compute axes intersection considering the 'TraceType'
-	 *  @param dp1 'Start' point of line
-	 *  @param dp2 'End' point of line
-	 *  @return The intersection points with the axes when draw the line between the two 
-	 * data points. The index 0 of the result is the first intersection point. index 1 is the second one.
+	/** Paint the trace into cachedImage, then draw the image.
+	 *  If the x axis only scrolled and samples were only appended since the
+	 *  last paint, the pixels of the image are moved to the left and
+	 *  only the part of the trace after the last painted sample is painted.
 	 */
-	private ISample[] getIntersection(final ISample dp1, final ISample dp2)
+	private void paintCachedImage(final Graphics graphics)
 	{
-		if (traceType == TraceType.STEP_HORIZONTALLY)
-		{
-			final ISample[] result = new Sample[2];
-			int count = 0;
-			// Data point between dp1 and dp2 using horizontal steps:
-			//            dp2
-			//             |
-			// dp1--------dp
-			final ISample dp = new Sample(dp2.getXValue(), dp1.getYValue());
-			// Check intersections of horizontal  dp1------dp section
-			final ISample iy[] = getStraightLineIntersection(dp1, dp);
-			// Intersects both y axes?
-            if (iy[1] != null)
-			    return iy;
-            // Intersects one y axis?
-			if(iy[0] != null)
-				result[count++] = iy[0];
-			// Check intersections of vertical  dp/dp2 section with x axes
-			final ISample ix[] = getStraightLineIntersection(dp, dp2);
-			// Intersects both x axes?
-			if (ix[1] != null)
-			    return ix;
-			// Intersects one x axis?
-			if (ix[0] != null)
-				result[count++] = ix[0];
-			return result;
-		}	
-		if (traceType == TraceType.STEP_VERTICALLY)
+		final Rectangle area = getBounds();
+		if (area.width <= 0 || area.height <= 0)
+			return;
+		synchronized (traceDataProvider)
 		{
-			final ISample[] result = new Sample[2];
-	         int count = 0;
-            // Data point between dp1 and dp2 using vertical steps:
-            // dp---------dp2
-            //  |           
-            // dp1
-			final ISample dp = new Sample(dp1.getXValue(), dp2.getYValue());
-			// Check intersections of vertical dp1/dp section
-			final ISample ix[] = getStraightLineIntersection(dp1, dp);
-			// Intersects both X axes?
-			if (ix[1] != null)
-			    return ix;
-			// Intersects one X axis?
-			if (ix[0] != null)
-				result[count++] = ix[0];
-			// Check intersection of horizontal dp----dp2 section with Y axes
-			final ISample iy[] = getStraightLineIntersection(dp, dp2);
-            // Intersects both y axes?
-            if (iy[1] != null)
-                return iy;
-            // Intersects one y axis?
-            if (iy[0] != null)
-				result[count++] = iy[0];
-			return result;
-		}	
-		return getStraightLineIntersection(dp1, dp2);
+			final Range xRange = xAxis.getRange();
+			final List<Object> key = getAppearanceKey();
+			final int shift = getCachedImageShift(key, xRange);
+			int clearX = area.x;
+			int fromIndex = 0;
+			if (shift < 0)
+			{   // Paint everything
+				if (cachedImage == null || !key.equals(cachedImageKey))
+				{
+					disposeCachedImage();
+					final ImageData imageData = new ImageData(area.width, area.height, 24,
+							new PaletteData(0xFF0000, 0xFF00, 0xFF));
+					imageData.transparentPixel = imageData.palette.getPixel(getBackgroundColor().getRGB());
+					cachedImage = new Image(Display.getCurrent(), imageData);
+				}
+				hotSampleist = new ArrayList<ISample>();
+				cachedXLower = xRange.getLower();
+			}
+			else
+			{   // Paint from the last sample of the previous paint,
+				// including the samples whose points or lines reach into that part
+				final int margin = Math.max(Math.max(lineWidth, pointSize), MARKER_SIZE) + 2;
+				clearX = Math.max(area.x, Math.min(area.right() - shift,
+						xAxis.getValuePosition(cachedLastX, false) - margin));
+				final double fromX = xAxis.getPositionValue(clearX - margin, false);
+				fromIndex = Math.max(0, nearBinarySearchX(fromX, true));
+				// Keep the hot samples which are still visible and not painted again
+				final List<ISample> hotSamples = new ArrayList<ISample>(hotSampleist.size());
+				for (ISample sample : hotSampleist)
+					if (sample.getXValue() >= xRange.getLower() && sample.getXValue() < fromX)
+						hotSamples.add(sample);
+				hotSampleist = hotSamples;
+				cachedXLower += shift * cachedXSpan / xAxis.getTickLength();
+			}
+			final GC gc = new GC(cachedImage);
+			final SWTGraphics imageGraphics = new SWTGraphics(gc);
+			try
+			{
+				if (shift > 0)
+					gc.copyArea(shift, 0, area.width - shift, area.height, 0, 0);
+				imageGraphics.translate(-area.x, -area.y);
+				final Rectangle clip = new Rectangle(clearX, area.y, area.right() - clearX, area.height);
+				imageGraphics.setBackgroundColor(getBackgroundColor());
+				imageGraphics.fillRectangle(clip);
+				imageGraphics.clipRect(clip);
+				painter.paintSamples(imageGraphics, null, fromIndex, hotSampleist);
+			}
+			finally
+			{
+				imageGraphics.dispose();
+				gc.dispose();
+			}
+			final int size = traceDataProvider.getSize();
+			cachedImageKey = key;
+			cachedXSpan = xRange.getUpper() - xRange.getLower();
+			cachedFirstX = size > 0 ? traceDataProvider.getSample(0).getXValue() : Double.NaN;
+			cachedLastX = size > 0 ? traceDataProvider.getSample(size-1).getXValue() : Double.NaN;
+			cachedLastY = size > 0 ? traceDataProvider.getSample(size-1).getYValue() : Double.NaN;
+		}
+		graphics.drawImage(cachedImage, area.x, area.y);
 	}
 	
+	/** @return everything but the x range which decides how the painted trace looks */
+	private List<Object> getAppearanceKey()
+	{
+		return Arrays.asList(new Object[] {
+				getBounds().getCopy(),
+				getBackgroundColor() == null ? null : getBackgroundColor().getRGB(),
+				xAxis.getBounds().getCopy(), xAxis.isLogScaleEnabled(),
+				yAxis.getBounds().getCopy(), yAxis.getRange(), yAxis.isLogScaleEnabled(),
+				traceDataProvider, traceType, baseLine, pointStyle,
+				lineWidth, pointSize, areaAlpha, antiAliasing,
+				traceColor == null ? null : traceColor.getRGB(),
+				errorBarEnabled, yErrorBarType, xErrorBarType, errorBarCapWidth,
+				errorBarColor == null ? null : errorBarColor.getRGB(), drawYErrorInArea });
+	}
 	
-	/** Compute intersection of straight line with axes,
-	 *  no correction for 'TraceType'.
-     *  @param dp1 'Start' point of line
-     *  @param dp2 'End' point of line
-	 *  @return The intersection points between the line, 
-	 *  which is the straight line between the two data points, and the axes.
-	 *  Result could be { null, null }, { point1, null } or { point1, point2 }.
+	/** @param key The current key of the cached image
+	 *  @param xRange The current x range
+	 *  @return the number of pixels to move the cached image to the left,
+	 *          or -1 if the whole trace needs to be painted
 	 */
-	private ISample[] getStraightLineIntersection(final ISample dp1, final ISample dp2){
-		final double x1 = dp1.getXValue();
-		final double y1 = dp1.getYValue();
-		final double x2 = dp2.getXValue();
-		final double y2 = dp2.getYValue();
-		final double dx = x2 - x1;
-		final double dy = y2 - y1;
-        final ISample[] dpTuple = new Sample[2];
-        int count = 0; // number of valid dbTuple entries
-		double x, y;
+	private int getCachedImageShift(final List<Object> key, final Range xRange)
+	{
+		// Error bars in x direction can reach anywhere
+		if (cachedImage == null || !key.equals(cachedImageKey) || errorBarEnabled ||
+			xAxis.isLogScaleEnabled() || !traceDataProvider.isChronological())
+			return -1;
+		// Same zoom?
+		final double span = xRange.getUpper() - xRange.getLower();
+		if (!(span > 0) || Math.abs(span - cachedXSpan) > span * 1e-9)
+			return -1;
+		// Were samples only appended, and only removed where they are not visible?
+		final int size = traceDataProvider.getSize();
+		if (size <= 0)
+			return -1;
+		final double firstX = traceDataProvider.getSample(0).getXValue();
+		if (firstX != cachedFirstX && firstX >= xRange.getLower())
+			return -1;
+		final int lastIndex = nearBinarySearchX(cachedLastX, true);
+		if (lastIndex < 0 || lastIndex >= size)
+			return -1;
+		final ISample last = traceDataProvider.getSample(lastIndex);
+		if (Double.compare(last.getXValue(), cachedLastX) != 0 ||
+			Double.compare(last.getYValue(), cachedLastY) != 0)
+			return -1;
+		// Scrolled to the right by less than the width of the plot?
+		final int tickLength = xAxis.getTickLength();
+		final double shift = (xRange.getLower() - cachedXLower) * tickLength / span;
+		if (shift < -0.5 || shift >= tickLength)
+			return -1;
+		return (int) Math.round(shift);
+	}
+	
+	private void disposeCachedImage()
+	{
+		if (cachedImage != null)
+			cachedImage.dispose();
+		cachedImage = null;
+		cachedImageKey = null;
+	}
+	
+	@Override
+	public void removeNotify() {
+		disposeCachedImage();
+		preparedGeometry = null;
+		super.removeNotify();
+	}
+	
+
+	/** @return true if the trace type is drawn as polylines */
+	private static boolean isPolylineType(final TraceType traceType)
+	{
+		switch (traceType)
+		{
+		case SOLID_LINE:
+		case DASH_LINE:
+		case STEP_HORIZONTALLY:
+		case STEP_VERTICALLY:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/** Paints the samples of the trace, or adds them to a geometry.
+	 *  A painter keeps the buffers of one paint or preparation at a time:
+	 *  the UI thread has its own painter, and every preparation creates one.
+	 *  The style which decides the geometry is copied into the painter,
+	 *  because a preparation must not read the fields of the trace.
+	 */
+	private class SamplePainter
+	{
+		/** Style of the trace while the painter is used */
+		private TraceType traceType;
+		private BaseLine baseLine;
+		private PointStyle pointStyle;
+		private boolean errorBarEnabled;
+		private ErrorBarType yErrorBarType;
+		private ErrorBarType xErrorBarType;
+		private int errorBarCapWidth;
+		private boolean drawYErrorInArea;
+		
+		/** X/Y values of the samples which are painted, read in chunks
+		 *  of {@link #VALUE_BUFFER_SIZE} from the data provider.
+		 */
+		final private double[] xValueBuffer = new double[VALUE_BUFFER_SIZE];
+		final private double[] yValueBuffer = new double[VALUE_BUFFER_SIZE];
+		/** Errors of the values in the value buffers, read if error bars are enabled */
+		final private double[] xPlusErrorBuffer = new double[VALUE_BUFFER_SIZE];
+		final private double[] xMinusErrorBuffer = new double[VALUE_BUFFER_SIZE];
+		final private double[] yPlusErrorBuffer = new double[VALUE_BUFFER_SIZE];
+		final private double[] yMinusErrorBuffer = new double[VALUE_BUFFER_SIZE];
+		/** Sample indices of the values in the value buffers */
+		final private int[] indexBuffer = new int[VALUE_BUFFER_SIZE];
+		/** Screen positions of the values in the value buffers */
+		final private int[] xPositionBuffer = new int[VALUE_BUFFER_SIZE];
+		final private int[] yPositionBuffer = new int[VALUE_BUFFER_SIZE];
+	
+		/** Indices of the samples to paint, if the trace is decimated */
+		private int[] decimatedIndices = new int[0];
+	
+		/** Screen coordinates x0, y0, x1, y1, ... of the line which is drawn next,
+		 *  for the trace types which are drawn as polylines, or of the top of the
+		 *  area which is filled next for the AREA trace type.
+		 */
+		final private int[] polyline = new int[2*POLYLINE_SIZE];
+		/** Position of the base line of the AREA trace type */
+		private int areaBaseY = 0;
+		/** Rectangles x0, y0, width0, height0, ... of the bars which are filled next */
+		final private int[] bars = new int[4*POLYLINE_SIZE];
+		/** Number of coordinates in bars */
+		private int barsLength = 0;
+		/** Error bar lines x1, y1, x2, y2, ... which are drawn next */
+		final private int[] errorBarLines = new int[4*POLYLINE_SIZE];
+		/** Number of coordinates in errorBarLines */
+		private int errorBarLinesLength = 0;
+		/** Screen coordinates x0, y0, x1, y1, ... of the line along the Y error area
+		 *  which is filled next, and the positions of the plus and minus errors of each point.
+		 */
+		final private int[] errorAreaLine = new int[2*POLYLINE_SIZE];
+		final private int[] errorAreaPlusY = new int[POLYLINE_SIZE];
+		final private int[] errorAreaMinusY = new int[POLYLINE_SIZE];
+		/** Number of points in the Y error area */
+		private int errorAreaLength = 0;
+		/** Number of coordinates in polyline */
+		private int polylineLength = 0;
+		/** Position in polyline of the first point in the last pixel column */
+		private int columnStart = 0;
+		/** Number of points added in the last pixel column */
+		private int columnCount = 0;
+		/** Lowest and highest y position in the last pixel column */
+		private int columnMinY, columnMaxY;
+		/** Clips the lines which cross the border of the plot area */
+		final private LineClipper clipper = new LineClipper();
 		
-		if (dy != 0.0)
-		{   // Intersection with lower xAxis
-    		final double ymin = yAxis.getRange().getLower();
-    		x = (ymin-y1)*dx/dy + x1;
-    		y = ymin;
-    		if(evalDP(x, y, dp1, dp2))
-    			dpTuple[count++] = new Sample(x, y);
-            // Intersection with upper xAxis
-            final double ymax = yAxis.getRange().getUpper();
-            x = (ymax-y1)*dx/dy+x1;
-            y = ymax;
-            if(evalDP(x, y, dp1, dp2))
-                dpTuple[count++] =  new Sample(x, y);
+		/** Samples selected by {@link #selectSamples(int, ScaleTransform)}: indices, or positions
+		 *  in decimatedIndices if decimated, or positions in the values of a geometry
+		 */
+		private int firstPosition, lastPosition;
+		private boolean decimated;
+		
+		/** Copy the style of the trace, or of a geometry, which was copied when it was requested.
+		 *  @param geometry Geometry which is prepared, or null to paint the trace as it is now
+		 */
+		private void readStyle(final TraceGeometry geometry)
+		{
+			if (geometry == null)
+			{
+				traceType = Trace.this.traceType;
+				baseLine = Trace.this.baseLine;
+				pointStyle = Trace.this.pointStyle;
+				errorBarEnabled = Trace.this.errorBarEnabled;
+				yErrorBarType = Trace.this.yErrorBarType;
+				xErrorBarType = Trace.this.xErrorBarType;
+				errorBarCapWidth = Trace.this.errorBarCapWidth;
+				drawYErrorInArea = Trace.this.drawYErrorInArea;
+			}
+			else
+			{
+				traceType = geometry.traceType;
+				baseLine = geometry.baseLine;
+				pointStyle = geometry.pointStyle;
+				errorBarEnabled = geometry.errorBarEnabled;
+				yErrorBarType = geometry.yErrorBarType;
+				xErrorBarType = geometry.xErrorBarType;
+				errorBarCapWidth = geometry.errorBarCapWidth;
+				drawYErrorInArea = geometry.drawYErrorInArea;
+			}
 		}
-		// A line that runs diagonally through the plot,
-		// hitting for example the lower left as well as upper right corners
-		// would cut both X as well as both Y axes.
-		// Return only the X axes hits, since Y axes hits are actually the
-		// same points.
-		if (count == 2)
-		    return dpTuple;
-		if (dx != 0.0)
-		{   // Intersection with left yAxis
-		    final double xmin = xAxis.getRange().getLower();
-    		x = xmin;
-    		y = (xmin-x1)*dy/dx+y1;
-    		if(evalDP(x, y, dp1, dp2))
-    			dpTuple[count++] = 	new Sample(x, y);
-            // Intersection with right yAxis
-            final double xmax = xAxis.getRange().getUpper();
-            x = xmax;
-            y = (xmax-x1)*dy/dx + y1;
-            if(dx != 0 && evalDP(x, y, dp1, dp2))
-                dpTuple[count++] =  new Sample(x, y);
+		
+		/** @return the sample at position j of the value buffers, which has the index in the data provider */
+		private ISample getSample(final TraceGeometry geometry, final int j, final int index)
+		{
+			if (geometry == null)
+				return traceDataProvider.getSample(index);
+			// Made from the copied values, the data provider may have changed since
+			return new Sample(xValueBuffer[j], yValueBuffer[j], yPlusErrorBuffer[j], yMinusErrorBuffer[j],
+					xPlusErrorBuffer[j], xMinusErrorBuffer[j]);
+		}
+
+		/** Draw the error bars of a sample, or add them to a geometry.
+		 *  The lines are drawn in batches by {@link #flushErrorBars(Graphics)}.
+		 *  @param graphics Graphics to draw on, or null
+		 *  @param geometry Geometry to add the lines to, or null
+		 *  @param x Position of the sample
+		 *  @param y Position of the sample
+		 *  @param j Position of the sample in the value and error buffers
+		 */
+		private void drawErrorBar(final Graphics graphics, final TraceGeometry geometry,
+				final ScaleTransform xTransform, final ScaleTransform yTransform,
+				final int x, final int y, final int j){
+			int ex, ey;
+			switch (yErrorBarType) {
+			case BOTH:
+			case MINUS:
+				ey = yTransform.getValuePosition(yValueBuffer[j] - yMinusErrorBuffer[j]);
+				drawErrorBarLine(graphics, geometry, x, y, x, ey);
+				drawErrorBarLine(graphics, geometry, x - errorBarCapWidth/2, ey, x + errorBarCapWidth/2, ey);
+				if(yErrorBarType != ErrorBarType.BOTH)
+				break;
+			case PLUS:
+				ey = yTransform.getValuePosition(yValueBuffer[j] + yPlusErrorBuffer[j]);
+				drawErrorBarLine(graphics, geometry, x, y, x, ey);
+				drawErrorBarLine(graphics, geometry, x - errorBarCapWidth/2, ey, x + errorBarCapWidth/2, ey);
+				break;			
+			default:
+				break;
+			}
+		
+			switch (xErrorBarType) {
+			case BOTH:
+			case MINUS:
+				ex = xTransform.getValuePosition(xValueBuffer[j] - xMinusErrorBuffer[j]);
+				drawErrorBarLine(graphics, geometry, x, y, ex, y);
+				drawErrorBarLine(graphics, geometry, ex, y - errorBarCapWidth/2, ex, y + errorBarCapWidth/2);
+				if(xErrorBarType != ErrorBarType.BOTH)
+				break;
+			case PLUS:
+				ex = xTransform.getValuePosition(xValueBuffer[j] + xPlusErrorBuffer[j]);
+				drawErrorBarLine(graphics, geometry, x, y, ex, y);
+				drawErrorBarLine(graphics, geometry, ex, y - errorBarCapWidth/2, ex, y + errorBarCapWidth/2);
+				break;			
+			default:
+				break;
+			}
 		}
-		return dpTuple;
-	}
 	
-	/** Sanity check:
-	 *  Point x/y was computed to be an axis intersection, but that can fail
-	 *  because of rounding errors or for samples with NaN, Infinity.
-	 *  Is it in the plot area?
-	 *  Is it between the start/end points.
-	 *  @param x
-	 *  @param y
-	 *  @param dp1
-	 *  @param dp2
-	 *  @return true if the point (x,y) is between dp1 and dp2
-	 *          BUT not equal to either
-	 *          AND within the x/y axes. false otherwise
-	 */
-	private boolean evalDP(final double x, final double y, final ISample dp1, final ISample dp2){
-	    // First check axis limits
-	    if (!xAxis.getRange().inRange(x)  ||   !yAxis.getRange().inRange(y))
-	        return false;
-	    // Check if dp is between dp1 and dp2.
-	    // Could this be done without constructing 2 new Ranges?
-		if (! new Range(dp1.getXValue(), dp2.getXValue()).inRange(x)  ||
-		    ! new Range(dp1.getYValue(), dp2.getYValue()).inRange(y))
-		    return false;
-		// TODO why the ==dp1,2 test?
-        final ISample dp = new Sample(x, y);
-		if(dp.equals(dp1) || dp.equals(dp2))
-			return false;
-		return true;	
-	}	
+		private void drawErrorBarLine(final Graphics graphics, final TraceGeometry geometry,
+				final int x1, final int y1, final int x2, final int y2){
+			if(geometry != null){
+				geometry.addErrorBarLine(x1, y1, x2, y2);
+				return;
+			}
+			if(errorBarLinesLength + 4 > errorBarLines.length)
+				flushErrorBars(graphics);
+			errorBarLines[errorBarLinesLength++] = x1;
+			errorBarLines[errorBarLinesLength++] = y1;
+			errorBarLines[errorBarLinesLength++] = x2;
+			errorBarLines[errorBarLinesLength++] = y2;
+		}
+	
+		/** Draw the error bar lines which were added since the last call */
+		private void flushErrorBars(final Graphics graphics){
+			if(errorBarLinesLength > 0){
+				graphics.pushState();
+				graphics.setForegroundColor(errorBarColor);
+				graphics.setLineStyle(SWT.LINE_SOLID);
+				graphics.setLineWidth(1);
+				for(int i=0; i<errorBarLinesLength; i+=4)
+					graphics.drawLine(errorBarLines[i], errorBarLines[i+1],
+							errorBarLines[i+2], errorBarLines[i+3]);
+				graphics.popState();
+			}
+			errorBarLinesLength = 0;
+		}
+	
+	
+		/** Add a segment of the line to the Y error area, which is filled as one polygon
+		 *  per run of connected segments by {@link #flushYErrorArea(Graphics)}.
+		 *  @param x1 Start of segment
+		 *  @param y1 Start of segment
+		 *  @param plusY1 Position of the plus error at the start
+		 *  @param minusY1 Position of the minus error at the start
+		 *  @param x2 End of segment
+		 *  @param y2 End of segment
+		 *  @param plusY2 Position of the plus error at the end
+		 *  @param minusY2 Position of the minus error at the end
+		 */
+		private void addYErrorAreaSegment(final Graphics graphics,
+				final int x1, final int y1, final int plusY1, final int minusY1,
+				final int x2, final int y2, final int plusY2, final int minusY2)
+		{
+			if (errorAreaLength == 0 || errorAreaLength == POLYLINE_SIZE ||
+				errorAreaLine[2*errorAreaLength-2] != x1 || errorAreaLine[2*errorAreaLength-1] != y1 ||
+				errorAreaPlusY[errorAreaLength-1] != plusY1 || errorAreaMinusY[errorAreaLength-1] != minusY1)
+			{
+				flushYErrorArea(graphics);
+				addYErrorAreaPoint(x1, y1, plusY1, minusY1);
+			}
+			addYErrorAreaPoint(x2, y2, plusY2, minusY2);
+		}
+
+		private void addYErrorAreaPoint(final int x, final int y, final int plusY, final int minusY)
+		{
+			errorAreaLine[2*errorAreaLength] = x;
+			errorAreaLine[2*errorAreaLength+1] = y;
+			errorAreaPlusY[errorAreaLength] = plusY;
+			errorAreaMinusY[errorAreaLength] = minusY;
+			errorAreaLength++;
+		}
+
+		/** Fill the Y error area which was added since the last call. It runs along the
+		 *  plus errors, or the line, and back along the minus errors, or the line.
+		 */
+		private void flushYErrorArea(final Graphics graphics)
+		{
+			final int n = errorAreaLength;
+			errorAreaLength = 0;
+			if (n < 2 || yErrorBarType == ErrorBarType.NONE)
+				return;
+			final int[] polygon = new int[4*n];
+			for (int i=0; i<n; i++)
+			{
+				polygon[2*i] = errorAreaLine[2*i];
+				polygon[2*i+1] = yErrorBarType == ErrorBarType.MINUS ?
+						errorAreaLine[2*i+1] : errorAreaPlusY[i];
+				final int k = n-1-i;
+				polygon[2*n+2*i] = errorAreaLine[2*k];
+				polygon[2*n+2*i+1] = yErrorBarType == ErrorBarType.PLUS ?
+						errorAreaLine[2*k+1] : errorAreaMinusY[k];
+			}
+			graphics.pushState();
+			Color lighter = null;
+			if (use_advanced_graphics)
+			{
+		        graphics.setBackgroundColor(errorBarColor);
+			    graphics.setAlpha(areaAlpha);
+			}
+			else
+			{
+		        final float[] hsb = errorBarColor.getRGB().getHSB();
+			    lighter = new Color(Display.getCurrent(),
+		                new RGB(hsb[0], hsb[1]*areaAlpha/255, 1.0f));
+	            graphics.setBackgroundColor(lighter);
+			}
+			graphics.fillPolygon(polygon);
+			graphics.popState();
+			if (lighter != null)
+			    lighter.dispose();
+		}
+
+		/** Paint the samples of the trace, or add them to a geometry.
+		 *  @param graphics Graphics to paint on, or null if a geometry is prepared
+		 *  @param geometry Geometry to prepare from its values, or null to paint the data provider
+		 *  @param fromIndex Index of the first sample to paint, if the data is chronological
+		 *  @param hotSamples List which receives the visible samples
+		 */
+		private void paintSamples(final Graphics graphics, final TraceGeometry geometry,
+				final int fromIndex, final List<ISample> hotSamples)
+		{
+			readStyle(geometry);
+			if (geometry != null)
+			{   // Neither the trace nor its data provider are used here
+				firstPosition = 0;
+				lastPosition = geometry.valueCount - 1;
+				decimated = false;
+				paintValues(null, geometry, geometry.xTransform, geometry.yTransform,
+						geometry.nanMarkersAtLower, null, hotSamples);
+				geometry.complete = true;
+				return;
+			}
+			final ScaleTransform xTransform = xAxis.getTransform();
+			final ScaleTransform yTransform = yAxis.getTransform();
+			graphics.pushState();
+			if (use_advanced_graphics)
+			    graphics.setAntialias(antiAliasing? SWT.ON : SWT.OFF);
+			graphics.setForegroundColor(traceColor);
+			graphics.setLineWidth(lineWidth);
+			final Image pointImage = getPointImage(graphics);
+			// Lock data provider to prevent changes while painting
+			synchronized (traceDataProvider)
+			{
+				selectSamples(fromIndex, xTransform);
+				paintValues(graphics, null, xTransform, yTransform,
+						xAxis.getTickLablesSide() == LabelSide.Primary, pointImage, hotSamples);
+			}
+			graphics.popState();
+		}
+		
+		/** Select the samples to paint, from fromIndex on if the data is chronological.
+		 *  Sets firstPosition, lastPosition and decimated.
+		 *  Must be called while holding the lock of the data provider.
+		 */
+		private void selectSamples(final int fromIndex, final ScaleTransform xTransform)
+		{
+			firstPosition = 0;
+			lastPosition = -1;
+			decimated = false;
+			if (traceDataProvider.getSize() <= 0)
+				return;
+			// Is only a sub-set of the trace data visible?
+			final int startIndex, endIndex;
+			if (traceDataProvider.isChronological())
+			{
+				final Range indexRange = getIndexRangeOnXAxis(xTransform.getRange());
+				if (indexRange == null)
+					return;
+				startIndex = Math.max(fromIndex, (int) indexRange.getLower());
+				endIndex = (int) indexRange.getUpper();
+			}
+			else
+			{   // Cannot optimize range, use all data points
+				startIndex = 0;
+				endIndex = traceDataProvider.getSize()-1;
+			}
+			// With many more samples than pixel columns, only paint
+			// the samples which make a difference in the picture.
+			final int decimatedCount = decimate(startIndex, endIndex, xTransform);
+			decimated = decimatedCount >= 0;
+			firstPosition = decimated ? 0 : startIndex;
+			lastPosition = decimated ? decimatedCount - 1 : endIndex;
+		}
+		
+		/** Copy the style of the trace and the values of the samples which are
+		 *  painted into a geometry, so it can be prepared without the trace and
+		 *  its data provider. The lock of the data provider is only held while
+		 *  the visible, or decimated, samples are copied.
+		 *  @param geometry Geometry with the transforms of the axes
+		 */
+		void copyValues(final TraceGeometry geometry)
+		{
+			readStyle(null);
+			geometry.traceType = traceType;
+			geometry.baseLine = baseLine;
+			geometry.pointStyle = pointStyle;
+			geometry.errorBarEnabled = errorBarEnabled;
+			geometry.yErrorBarType = yErrorBarType;
+			geometry.xErrorBarType = xErrorBarType;
+			geometry.errorBarCapWidth = errorBarCapWidth;
+			geometry.drawYErrorInArea = drawYErrorInArea;
+			synchronized (traceDataProvider)
+			{
+				selectSamples(0, geometry.xTransform);
+				geometry.allocateValues(lastPosition - firstPosition + 1, errorBarEnabled);
+				for (int chunkStart=firstPosition; chunkStart<=lastPosition; chunkStart += VALUE_BUFFER_SIZE)
+				{
+					final int chunkLength = Math.min(VALUE_BUFFER_SIZE, lastPosition - chunkStart + 1);
+					readValues(null, chunkStart, chunkLength);
+					geometry.addValues(xValueBuffer, yValueBuffer, xPlusErrorBuffer, xMinusErrorBuffer,
+							yPlusErrorBuffer, yMinusErrorBuffer, chunkLength);
+				}
+			}
+		}
+		
+		/** Paint the selected samples, or add them to a geometry.
+		 *  @param pointImage Image to stamp for every point, or null to draw them
+		 *  @see #paintSamples(Graphics, TraceGeometry, int, List)
+		 */
+		private void paintValues(final Graphics graphics, final TraceGeometry geometry,
+				final ScaleTransform xTransform, final ScaleTransform yTransform,
+				final boolean nanMarkersAtLower, final Image pointImage, final List<ISample> hotSamples)
+		{
+			double predpX = 0;
+			double predpY = 0;
+			int predpPosX = 0;
+			int predpPosY = 0;
+			int predpIndex = -1;
+			double predpYPlusError = 0;
+			double predpYMinusError = 0;
+			boolean hasPredp = false;
+			boolean predpInRange = false;
+			final Range xRange = xTransform.getRange();
+			final Range yRange = yTransform.getRange();
+			// Lines are collected into polylines, areas into one polygon
+			// per run of samples and bars into a list of rectangles
+			final boolean drawPolyline = isPolylineType(traceType) || traceType == TraceType.AREA;
+			if(drawPolyline && graphics != null)
+			    graphics.setLineStyle(traceType == TraceType.DASH_LINE ? SWT.LINE_DASH : SWT.LINE_SOLID);
+			if(traceType == TraceType.AREA){
+				switch (baseLine) {
+				case NEGATIVE_INFINITY:
+					areaBaseY = yTransform.getValuePosition(yRange.getLower());
+					break;
+				case POSITIVE_INFINITY:
+					areaBaseY = yTransform.getValuePosition(yRange.getUpper());
+					break;
+				default:
+					areaBaseY = yTransform.getValuePosition(0);
+					break;
+				}
+			}
+			polylineLength = 0;
+			barsLength = 0;
+			// Read the values chunk by chunk instead of sample by sample.
+			// predp and dp are kept as x/y values plus their sample index,
+			// which is -1 for points that were computed, like axis intersections.
+			for (int chunkStart=firstPosition; chunkStart<=lastPosition; chunkStart += VALUE_BUFFER_SIZE)
+			{
+			    final int chunkLength = Math.min(VALUE_BUFFER_SIZE, lastPosition - chunkStart + 1);
+			    readValues(geometry, chunkStart, chunkLength);
+			    xTransform.valuesToPositions(xValueBuffer, xPositionBuffer, chunkLength);
+			    yTransform.valuesToPositions(yValueBuffer, yPositionBuffer, chunkLength);
+			    for (int j=0; j<chunkLength; j++)
+			    {
+			    int dpIndex = indexBuffer[j];
+			    double dpX = xValueBuffer[j];
+			    double dpY = yValueBuffer[j];
+			    int dpPosX = xPositionBuffer[j];
+			    int dpPosY = yPositionBuffer[j];
+			    double dpYPlusError = errorBarEnabled ? yPlusErrorBuffer[j] : 0;
+			    double dpYMinusError = errorBarEnabled ? yMinusErrorBuffer[j] : 0;
+	            final boolean dpInXRange = xRange.inRange(dpX);
+				// Mark 'NaN' samples on X axis
+				final boolean valueIsNaN = Double.isNaN(dpY);
+	            if (dpInXRange  &&  valueIsNaN)
+	            {
+	                final ISample dp = getSample(geometry, j, dpIndex);
+	                final double markY = nanMarkersAtLower ? yRange.getLower() : yRange.getUpper();
+					final int markPosY = yTransform.getValuePosition(markY);
+					if(geometry != null)
+						geometry.addNaNMarker(dpPosX, markPosY);
+					else{
+						graphics.setBackgroundColor(traceColor);
+						graphics.fillRectangle(dpPosX -MARKER_SIZE/2, markPosY - MARKER_SIZE/2, MARKER_SIZE, MARKER_SIZE);
+					}
+					Sample nanSample = new Sample(dpX, markY,
+							dp.getYPlusError(), dp.getYMinusError(),
+							Double.NaN, dp.getXMinusError(), dp.getInfo());
+					hotSamples.add(nanSample);
+				}
+				// Is data point in the plot area?
+	            boolean dpInRange = dpInXRange && yRange.inRange(dpY);
+				//draw point
+				if(dpInRange){
+					final ISample dp = getSample(geometry, j, dpIndex);
+					hotSamples.add(dp);
+					if(pointStyle != PointStyle.NONE){
+						if(geometry != null)
+							geometry.addPoint(dpPosX, dpPosY);
+						else if(pointImage != null)
+							graphics.drawImage(pointImage, dpPosX - getPointImageCenter(),
+									dpPosY - getPointImageCenter());
+						else
+							drawPoint(graphics, new Point(dpPosX, dpPosY));
+					}
+					if(errorBarEnabled && !drawYErrorInArea)
+						drawErrorBar(graphics, geometry, xTransform, yTransform, dpPosX, dpPosY, j);
+				}
+				if(traceType == TraceType.POINT && !drawYErrorInArea)
+					continue; // no need to draw line			
+			
+				//draw line
+				if(traceType == TraceType.BAR){
+					predpX = dpX;
+					switch (baseLine) {
+					case NEGATIVE_INFINITY:
+						predpY = yRange.getLower();
+						break;
+					case POSITIVE_INFINITY:
+						predpY = yRange.getUpper();
+						break;
+					default:
+						predpY = 0;
+						break;
+					}
+					predpPosX = dpPosX;
+					predpPosY = yTransform.getValuePosition(predpY);
+					predpIndex = -1;
+					hasPredp = true;
+					predpInRange = xRange.inRange(predpX) && yRange.inRange(predpY);
+				}
+				if(!hasPredp)
+				{   // No previous data point from which to draw a line
+					predpX = dpX;
+					predpY = dpY;
+					predpPosX = dpPosX;
+					predpPosY = dpPosY;
+					predpIndex = dpIndex;
+					predpYPlusError = dpYPlusError;
+					predpYMinusError = dpYMinusError;
+					hasPredp = true;
+					predpInRange = dpInRange;
+					continue;
+				}
+			
+				// Save original dp info because handling of NaN or
+				// axis intersections might patch it
+				final double origin_dpX = dpX;
+				final double origin_dpY = dpY;
+				final int origin_dpPosX = dpPosX;
+				final int origin_dpPosY = dpPosY;
+				final int origin_dpIndex = dpIndex;
+				final double origin_dpYPlusError = dpYPlusError;
+				final double origin_dpYMinusError = dpYMinusError;
+				final boolean origin_dpInRange = dpInRange;
+
+				// In 'STEP' modes, if there was a value, now there is none,
+				// continue that last value until the NaN location
+				if (valueIsNaN  &&  !Double.isNaN(predpY) &&
+	                (traceType == TraceType.STEP_HORIZONTALLY  ||
+	                 traceType == TraceType.STEP_VERTICALLY))
+	            {   // Patch 'y' of dp, re-compute dpInRange for new 'y'
+				    dpY = predpY;
+				    dpPosY = predpPosY;
+				    dpIndex = -1;
+				    dpYPlusError = dpYMinusError = 0;
+				    dpInRange = yRange.inRange(dpY);
+	            }
+			
+				if(traceType == TraceType.AREA ?
+						Double.isNaN(predpY) || Double.isNaN(dpY) : !predpInRange || !dpInRange)
+				{   // Clip the line to the plot area. Areas are not clipped, only split at NaN.
+				    if(traceType == TraceType.AREA || !clipLine(predpX, predpY, dpX, dpY, xRange, yRange)){ // no intersection with plot area
+						predpX = origin_dpX;
+						predpY = origin_dpY;
+						predpPosX = origin_dpPosX;
+						predpPosY = origin_dpPosY;
+						predpIndex = origin_dpIndex;
+						predpYPlusError = origin_dpYPlusError;
+						predpYMinusError = origin_dpYMinusError;
+						predpInRange = origin_dpInRange;
+						continue;
+					}
+					if(!predpInRange){
+						predpX = clipper.getX1();
+						predpY = clipper.getY1();
+						predpPosX = xTransform.getValuePosition(predpX);
+						predpPosY = yTransform.getValuePosition(predpY);
+						predpIndex = -1;
+						predpYPlusError = predpYMinusError = 0;
+					}
+					if(!dpInRange){
+						dpX = clipper.getX2();
+						dpY = clipper.getY2();
+						dpPosX = xTransform.getValuePosition(dpX);
+						dpPosY = yTransform.getValuePosition(dpY);
+						dpIndex = -1;
+						dpYPlusError = dpYMinusError = 0;
+					}
+				}
+			
+				if(dpPosX != predpPosX || dpPosY != predpPosY){
+					if(errorBarEnabled && drawYErrorInArea && traceType!=TraceType.BAR)
+						addYErrorAreaSegment(graphics, predpPosX, predpPosY,
+								yTransform.getValuePosition(predpY + predpYPlusError),
+								yTransform.getValuePosition(predpY - predpYMinusError),
+								dpPosX, dpPosY,
+								yTransform.getValuePosition(dpY + dpYPlusError),
+								yTransform.getValuePosition(dpY - dpYMinusError));
+					if(drawPolyline)
+						addPolylineSegment(graphics, geometry, predpPosX, predpPosY, dpPosX, dpPosY);
+					else if(traceType == TraceType.BAR)
+						addBar(graphics, dpPosX, predpPosY, dpPosY);
+					else
+						drawLine(graphics, new Point(predpPosX, predpPosY), new Point(dpPosX, dpPosY));
+				}
+			
+				predpX = origin_dpX;
+				predpY = origin_dpY;
+				predpPosX = origin_dpPosX;
+				predpPosY = origin_dpPosY;
+				predpIndex = origin_dpIndex;
+				predpYPlusError = origin_dpYPlusError;
+				predpYMinusError = origin_dpYMinusError;
+				predpInRange = origin_dpInRange;
+			    }
+			}
+			flushPolyline(graphics, geometry);
+			if(graphics != null){
+				flushYErrorArea(graphics); // for the POINT trace type without polyline
+				flushBars(graphics);
+				flushErrorBars(graphics);
+			}
+		}
+
+		/** Add a line segment to the polyline. The polyline is drawn when it is full
+		 *  or when the segment does not start at its end, for example after a NaN
+		 *  gap or where the line left the plot area. An area is also filled where
+		 *  its samples go back on the x axis, so every polygon stays simple.
+		 *  @param x1 Start of segment
+		 *  @param y1 Start of segment
+		 *  @param x2 End of segment
+		 *  @param y2 End of segment
+		 */
+		private void addPolylineSegment(final Graphics graphics, final TraceGeometry geometry,
+				final int x1, final int y1, final int x2, final int y2)
+		{
+			if (polylineLength == 0 ||
+				polyline[polylineLength-2] != x1 || polyline[polylineLength-1] != y1 ||
+				(traceType == TraceType.AREA && x2 < x1))
+			{
+				flushPolyline(graphics, geometry);
+				addPolylinePoint(graphics, geometry, x1, y1);
+			}
+			if (traceType == TraceType.STEP_HORIZONTALLY)
+				addPolylinePoint(graphics, geometry, x2, y1);
+			else if (traceType == TraceType.STEP_VERTICALLY)
+				addPolylinePoint(graphics, geometry, x1, y2);
+			addPolylinePoint(graphics, geometry, x2, y2);
+		}
+	
+		/** Add a point to the polyline.
+		 *  When many points fall into the same pixel column, their line is a
+		 *  vertical stroke from the lowest to the highest point, so only the
+		 *  first, lowest, highest and last point of a column are kept.
+		 *  This bounds the polyline by the plot width and keeps every spike.
+		 */
+		private void addPolylinePoint(final Graphics graphics, final TraceGeometry geometry,
+				final int x, final int y)
+		{
+			if (polylineLength > 0 && polyline[columnStart] == x)
+			{
+				if (y < columnMinY)
+					columnMinY = y;
+				if (y > columnMaxY)
+					columnMaxY = y;
+				if (++columnCount > 2)
+				{
+					polylineLength = columnStart + 2;
+					polyline[polylineLength++] = x;
+					polyline[polylineLength++] = columnMinY;
+					polyline[polylineLength++] = x;
+					polyline[polylineLength++] = columnMaxY;
+				}
+				polyline[polylineLength++] = x;
+				polyline[polylineLength++] = y;
+				return;
+			}
+			if (polylineLength + 8 > polyline.length)
+			{   // Draw the full polyline and continue from its last point
+				final int lastX = polyline[polylineLength-2];
+				final int lastY = polyline[polylineLength-1];
+				flushPolyline(graphics, geometry);
+				polyline[polylineLength++] = lastX;
+				polyline[polylineLength++] = lastY;
+			}
+			// First point of a new pixel column, which has room for 4 points
+			columnStart = polylineLength;
+			columnCount = 1;
+			columnMinY = y;
+			columnMaxY = y;
+			polyline[polylineLength++] = x;
+			polyline[polylineLength++] = y;
+		}
+	
+		/** Draw the points collected in the polyline, if any, or add them to the geometry */
+		private void flushPolyline(final Graphics graphics, final TraceGeometry geometry)
+		{
+			// Fill the error area along the line first, so the line is drawn on top of it
+			if (geometry == null)
+				flushYErrorArea(graphics);
+			if (polylineLength >= 4)
+			{
+				if (geometry != null)
+					geometry.addPolyline(polyline, polylineLength);
+				else if (traceType == TraceType.AREA)
+				{   // Close the area along the base line
+					final int[] points = new int[polylineLength + 4];
+					System.arraycopy(polyline, 0, points, 0, polylineLength);
+					points[polylineLength] = polyline[polylineLength-2];
+					points[polylineLength+1] = areaBaseY;
+					points[polylineLength+2] = polyline[0];
+					points[polylineLength+3] = areaBaseY;
+					graphics.pushState();
+					if (use_advanced_graphics)
+					    graphics.setAlpha(areaAlpha);
+					graphics.setBackgroundColor(traceColor);
+					graphics.fillPolygon(points);
+					graphics.popState();
+				}
+				else
+				{
+					final int[] points = new int[polylineLength];
+					System.arraycopy(polyline, 0, points, 0, polylineLength);
+					graphics.drawPolyline(points);
+				}
+			}
+			polylineLength = 0;
+		}
+
+		/** Add a bar to the rectangles which are filled next.
+		 *  @param x Position of the bar
+		 *  @param y1 Start of the bar
+		 *  @param y2 End of the bar
+		 */
+		private void addBar(final Graphics graphics, final int x, final int y1, final int y2)
+		{
+			if (barsLength + 4 > bars.length)
+				flushBars(graphics);
+			bars[barsLength++] = x - lineWidth/2;
+			bars[barsLength++] = Math.min(y1, y2);
+			bars[barsLength++] = lineWidth;
+			bars[barsLength++] = Math.abs(y2 - y1) + 1;
+		}
+
+		/** Fill the bars which were added since the last call */
+		private void flushBars(final Graphics graphics)
+		{
+			if (barsLength > 0)
+			{
+				graphics.pushState();
+				if (use_advanced_graphics)
+				    graphics.setAlpha(areaAlpha);
+				graphics.setBackgroundColor(traceColor);
+				for (int i=0; i<barsLength; i+=4)
+					graphics.fillRectangle(bars[i], bars[i+1], bars[i+2], bars[i+3]);
+				graphics.popState();
+			}
+			barsLength = 0;
+		}
+	
+	
+		/** Select the samples to paint if the trace has many more samples
+		 *  than pixel columns and the picture is the same with fewer samples:
+		 *  a line without points or error bars on a linear x axis.
+		 *  @param startIndex Index of first visible sample
+		 *  @param endIndex Index of last visible sample
+		 *  @param xTransform Transform of the x axis
+		 *  @return Number of samples in decimatedIndices, or -1 to paint all samples
+		 */
+		private int decimate(final int startIndex, final int endIndex, final ScaleTransform xTransform)
+		{
+			final Range xRange = xTransform.getRange();
+			final int columns = xTransform.getTickLength();
+			if (!(traceDataProvider instanceof IDecimatingDataProvider) ||
+				!traceDataProvider.isChronological() ||
+				columns <= 0 ||
+				endIndex - startIndex + 1 <= DECIMATION_THRESHOLD * columns ||
+				xTransform.isLogScaleEnabled() ||
+				traceType == TraceType.POINT ||
+				pointStyle != PointStyle.NONE ||
+				errorBarEnabled)
+				return -1;
+			// 4 samples per column and some room for columns with NaN
+			final int size = 2 * DECIMATION_THRESHOLD * (columns + 2);
+			if (decimatedIndices.length != size)
+				decimatedIndices = new int[size];
+			return ((IDecimatingDataProvider) traceDataProvider).getDecimatedIndices(
+					startIndex, endIndex, xRange.getLower(), xRange.getUpper(), columns, decimatedIndices);
+		}
+	
+		/** Read the x/y values and indices of samples into the buffers,
+		 *  in one call if the data provider supports bulk access.
+		 *  @param geometry Geometry to read the copied values from, or null to read the data provider
+		 *  @param fromPosition Index of first sample, or position of the first
+		 *                      sample in decimatedIndices or in the geometry
+		 *  @param length Number of samples, at most {@link #VALUE_BUFFER_SIZE}
+		 */
+		private void readValues(final TraceGeometry geometry, final int fromPosition, final int length)
+		{
+			if (geometry != null)
+			{
+				for (int i=0; i<length; i++)
+					indexBuffer[i] = fromPosition + i;
+				System.arraycopy(geometry.xValues, fromPosition, xValueBuffer, 0, length);
+				System.arraycopy(geometry.yValues, fromPosition, yValueBuffer, 0, length);
+				if (errorBarEnabled)
+				{
+					System.arraycopy(geometry.xPlusErrors, fromPosition, xPlusErrorBuffer, 0, length);
+					System.arraycopy(geometry.xMinusErrors, fromPosition, xMinusErrorBuffer, 0, length);
+					System.arraycopy(geometry.yPlusErrors, fromPosition, yPlusErrorBuffer, 0, length);
+					System.arraycopy(geometry.yMinusErrors, fromPosition, yMinusErrorBuffer, 0, length);
+				}
+				return;
+			}
+			if (decimated)
+			{
+				final IBulkDataProvider bulkData = (IBulkDataProvider) traceDataProvider;
+				for (int i=0; i<length; i++)
+				{
+					final int index = decimatedIndices[fromPosition + i];
+					indexBuffer[i] = index;
+					bulkData.getXValues(index, 1, xValueBuffer, i);
+					bulkData.getYValues(index, 1, yValueBuffer, i);
+					if (errorBarEnabled)
+						bulkData.getErrors(index, 1, xPlusErrorBuffer, xMinusErrorBuffer,
+								yPlusErrorBuffer, yMinusErrorBuffer, i);
+				}
+				return;
+			}
+			final int fromIndex = fromPosition;
+			for (int i=0; i<length; i++)
+				indexBuffer[i] = fromIndex + i;
+			if (traceDataProvider instanceof IBulkDataProvider)
+			{
+				final IBulkDataProvider bulkData = (IBulkDataProvider) traceDataProvider;
+				bulkData.getXValues(fromIndex, length, xValueBuffer, 0);
+				bulkData.getYValues(fromIndex, length, yValueBuffer, 0);
+				if (errorBarEnabled)
+					bulkData.getErrors(fromIndex, length, xPlusErrorBuffer, xMinusErrorBuffer,
+							yPlusErrorBuffer, yMinusErrorBuffer, 0);
+				return;
+			}
+			for (int i=0; i<length; i++)
+			{
+				final ISample sample = traceDataProvider.getSample(fromIndex + i);
+				xValueBuffer[i] = sample.getXValue();
+				yValueBuffer[i] = sample.getYValue();
+				if (errorBarEnabled)
+				{
+					xPlusErrorBuffer[i] = sample.getXPlusError();
+					xMinusErrorBuffer[i] = sample.getXMinusError();
+					yPlusErrorBuffer[i] = sample.getYPlusError();
+					yMinusErrorBuffer[i] = sample.getYMinusError();
+				}
+			}
+		}
+	
+		/** Clip the line between two data points to the plot area, considering the 'TraceType'.
+		 *  The part of the line in the plot area is in the clipper afterwards.
+		 *  @return false if no part of the line is in the plot area.
+		 */
+		private boolean clipLine(final double x1, final double y1, final double x2, final double y2,
+				final Range xRange, final Range yRange)
+		{
+			if (traceType == TraceType.STEP_HORIZONTALLY)
+				return clipper.clipHorizontalStep(x1, y1, x2, y2, xRange, yRange);
+			if (traceType == TraceType.STEP_VERTICALLY)
+				return clipper.clipVerticalStep(x1, y1, x2, y2, xRange, yRange);
+			return clipper.clipLine(x1, y1, x2, y2, xRange, yRange);
+		}
+	}
 
 	/**
 	 * @param axis the xAxis to set
@@ -824,6 +1673,10 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 	 */
 	public void setDataProvider(
 			IDataProvider traceDataProvider) {
+		// changes made on other threads are announced on the UI thread of this trace
+		final Display display = Display.getCurrent();
+		if(display != null && traceDataProvider instanceof AbstractDataProvider)
+			((AbstractDataProvider) traceDataProvider).setDisplay(display);
 		traceDataProvider.addDataProviderListener(this);
 	//	traceDataProvider.addDataProviderListener(xAxis);
 	//	traceDataProvider.addDataProviderListener(yAxis);
@@ -901,6 +1754,52 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 		this.antiAliasing = antiAliasing;
 	}
 	
+	/**Paint the trace into an image which is kept between paints.
+	 * When the x axis scrolls while samples are appended, like in a strip chart,
+	 * the image is moved and only the new part of the trace is painted.
+	 * Zooming, resizing, style changes or removed visible samples paint the whole trace.
+	 * The pixels in the background color of the plot area are transparent,
+	 * so this works best for traces on a plain background.
+	 * @param imageCaching true to cache the painted trace in an image.
+	 */
+	public void setImageCaching(boolean imageCaching) {
+		this.imageCaching = imageCaching;
+		if(!imageCaching)
+			disposeCachedImage();
+		repaint();
+	}
+	
+	/**
+	 * @return true if the painted trace is cached in an image.
+	 */
+	public boolean isImageCaching() {
+		return imageCaching;
+	}
+	
+	/**Compute the screen geometry of the trace on a background thread whenever its
+	 * data changes, so the UI thread only draws the prepared points and lines.
+	 * Traces on many cores are prepared in parallel.
+	 * This is used for line, step and point traces without a Y error area,
+	 * and not when the trace is cached in an image.
+	 * After zooming or resizing, the trace is painted on the UI thread
+	 * until the new geometry is prepared; while the x axis scrolls, the
+	 * prepared geometry is shifted and no new one is prepared until it stops.
+	 * @param backgroundPreparation true to prepare the geometry in the background.
+	 */
+	public void setBackgroundPreparation(boolean backgroundPreparation) {
+		this.backgroundPreparation = backgroundPreparation;
+		if(!backgroundPreparation)
+			preparedGeometry = null;
+		repaint();
+	}
+	
+	/**
+	 * @return true if the geometry of the trace is prepared on a background thread.
+	 */
+	public boolean isBackgroundPreparation() {
+		return backgroundPreparation;
+	}
+	
 	/**
 	 * @param name the name of the trace to set
 	 */
@@ -943,11 +1842,18 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 	}
 
 	public void dataChanged(IDataProvider dataProvider) {		
+		//data changes are refreshed once per frame by the graph, honoring the update delay.
+		if(xyGraph != null && dataProvider != null){
+			xyGraph.scheduleRefresh(this, dataProvider instanceof AbstractDataProvider ?
+					((AbstractDataProvider)dataProvider).getUpdateDelay() : 0);
+			return;
+		}
 		//if the axis has been repainted, it will cause the trace to be repainted autoly,
 		//the trace doesn't have to be repainted again.
 		boolean xRepainted = xAxis.performAutoScale(false);
 		boolean yRepainted = yAxis.performAutoScale(false);
-		if( !xRepainted && !yRepainted )
+		boolean prepared = prepareGeometry();
+		if( !xRepainted && !yRepainted && !prepared)
 			repaint();
 	}	
 
@@ -957,10 +1863,10 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 	 * between inside data and outside data.    
 	 * <b>This method only works for chronological data,
 	 * which means the data is naturally sorted on xAxis.</b>
+	 * @param axisRange the range of the xAxis.
 	 * @return the Range of the index.
 	 */
-	private Range getIndexRangeOnXAxis() {
-		Range axisRange = xAxis.getRange();
+	private Range getIndexRangeOnXAxis(final Range axisRange) {
 		if(traceDataProvider.getSize() <=0)
 			return null;
 		if(axisRange.getLower()> traceDataProvider.getSample(traceDataProvider.getSize()-1).getXValue() 
@@ -980,6 +1886,14 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 	// It will return the index on the closest left(if left is true) or right of the data
 	// Like public version, but without range checks. 
     private int nearBinarySearchX(double key, boolean left) {
+	if(traceDataProvider instanceof IBulkDataProvider){
+		final int index = ((IBulkDataProvider)traceDataProvider).binarySearchX(key);
+		if(index >= 0)
+			return index; // key found
+		// key is between the samples at insertion point -1 and insertion point
+		final int insertionPoint = -(index + 1);
+		return left ? insertionPoint - 1 : insertionPoint;
+	}
 	int low = 0;
 	int high = traceDataProvider.getSize() - 1;
 
@@ -1092,6 +2006,19 @@ public class Trace extends Figure implements IDataProviderListener, IAxisListene
 		return hotSampleist;
 	}
 
+	/**Find the hot sample nearest to a position, e.g. to snap to the trace.
+	 * @param x the x position in pixels.
+	 * @param y the y position in pixels.
+	 * @return the nearest hot sample, or null if there is no hot sample.
+	 */
+	public ISample getNearestHotSample(final int x, final int y) {
+		final ScaleTransform xTransform = xAxis.getTransform();
+		final ScaleTransform yTransform = yAxis.getTransform();
+		if(hotSampleIndex == null || !hotSampleIndex.isIndexOf(hotSampleist, xTransform, yTransform))
+			hotSampleIndex = new HotSampleIndex(hotSampleist, xTransform, yTransform);
+		return hotSampleIndex.getNearest(x, y);
+	}
+
 
 	/**
 	 * @return the baseLine
@@ -0,0 +1,159 @@
+package org.csstudio.swt.xygraph.figures;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.figures.Trace.BaseLine;
+import org.csstudio.swt.xygraph.figures.Trace.ErrorBarType;
+import org.csstudio.swt.xygraph.figures.Trace.PointStyle;
+import org.csstudio.swt.xygraph.figures.Trace.TraceType;
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.csstudio.swt.xygraph.linearscale.ScaleTransform;
+
+/**
+ * The screen geometry of a trace: its polylines, point markers, NaN markers and
+ * error bars in pixels. It is computed on a background thread from a snapshot of
+ * the axes, the style and the visible values of the trace, which is taken on the
+ * UI thread, so the trace only needs to draw the prepared arrays on the UI thread.
+ */
+class TraceGeometry {
+
+	/** Everything but the x range which decides how the trace looks */
+	final List<Object> key;
+
+	final ScaleTransform xTransform;
+
+	final ScaleTransform yTransform;
+
+	/** Are the NaN markers at the lower end of the y axis? */
+	final boolean nanMarkersAtLower;
+
+	/** Style of the trace, copied on the UI thread */
+	TraceType traceType;
+	BaseLine baseLine;
+	PointStyle pointStyle;
+	boolean errorBarEnabled;
+	ErrorBarType yErrorBarType;
+	ErrorBarType xErrorBarType;
+	int errorBarCapWidth;
+	boolean drawYErrorInArea;
+
+	/** Values of the samples which are painted, copied on the UI thread.
+	 *  The errors are only copied if error bars are enabled.
+	 */
+	double[] xValues, yValues;
+	double[] xPlusErrors, xMinusErrors, yPlusErrors, yMinusErrors;
+	int valueCount = 0;
+
+	/** Coordinates x0, y0, x1, y1, ... of every polyline */
+	final List<int[]> polylines = new ArrayList<int[]>();
+
+	/** Coordinates of the point markers, the NaN markers and the error bar lines */
+	int[] points = new int[64];
+	int pointsLength = 0;
+	int[] nanMarkers = new int[16];
+	int nanMarkersLength = 0;
+	int[] errorBarLines = new int[64];
+	int errorBarLinesLength = 0;
+
+	/** The samples which are visible */
+	final List<ISample> hotSamples = new ArrayList<ISample>();
+
+	/** Was the geometry prepared for all samples? */
+	boolean complete = false;
+
+	TraceGeometry(final List<Object> key, final ScaleTransform xTransform,
+			final ScaleTransform yTransform, final boolean nanMarkersAtLower) {
+		this.key = key;
+		this.xTransform = xTransform;
+		this.yTransform = yTransform;
+		this.nanMarkersAtLower = nanMarkersAtLower;
+	}
+
+	/**
+	 * @param key the current key of the trace.
+	 * @param transform the current transform of the x axis.
+	 * @return the number of pixels to move the geometry along the x axis, so it shows
+	 * the trace as it would be painted now, except for the samples which scrolled in;
+	 * or {@link Integer#MIN_VALUE} if the geometry is incomplete, the trace looks different,
+	 * or the x axis was zoomed or scrolled by more than its length.
+	 */
+	int getShift(final List<Object> key, final ScaleTransform transform) {
+		if(!complete || !this.key.equals(key))
+			return Integer.MIN_VALUE;
+		final int shift = transform.getScrollDistance(xTransform);
+		if(shift == Integer.MIN_VALUE || Math.abs(shift) >= transform.getTickLength())
+			return Integer.MIN_VALUE;
+		return shift;
+	}
+
+	/**
+	 * @param xRange the current range of the x axis.
+	 * @return true if the geometry was prepared for the range.
+	 */
+	boolean matches(final Range xRange) {
+		return xTransform.getRange().equals(xRange);
+	}
+
+	/** Create the arrays for the copied values */
+	void allocateValues(final int count, final boolean errors) {
+		xValues = new double[count];
+		yValues = new double[count];
+		if(errors){
+			xPlusErrors = new double[count];
+			xMinusErrors = new double[count];
+			yPlusErrors = new double[count];
+			yMinusErrors = new double[count];
+		}
+		valueCount = 0;
+	}
+
+	/** Append values to the copied values */
+	void addValues(final double[] x, final double[] y, final double[] xPlusError, final double[] xMinusError,
+			final double[] yPlusError, final double[] yMinusError, final int length) {
+		System.arraycopy(x, 0, xValues, valueCount, length);
+		System.arraycopy(y, 0, yValues, valueCount, length);
+		if(xPlusErrors != null){
+			System.arraycopy(xPlusError, 0, xPlusErrors, valueCount, length);
+			System.arraycopy(xMinusError, 0, xMinusErrors, valueCount, length);
+			System.arraycopy(yPlusError, 0, yPlusErrors, valueCount, length);
+			System.arraycopy(yMinusError, 0, yMinusErrors, valueCount, length);
+		}
+		valueCount += length;
+	}
+
+	void addPolyline(final int[] coordinates, final int length) {
+		final int[] polyline = new int[length];
+		System.arraycopy(coordinates, 0, polyline, 0, length);
+		polylines.add(polyline);
+	}
+
+	void addPoint(final int x, final int y) {
+		points = ensureCapacity(points, pointsLength + 2);
+		points[pointsLength++] = x;
+		points[pointsLength++] = y;
+	}
+
+	void addNaNMarker(final int x, final int y) {
+		nanMarkers = ensureCapacity(nanMarkers, nanMarkersLength + 2);
+		nanMarkers[nanMarkersLength++] = x;
+		nanMarkers[nanMarkersLength++] = y;
+	}
+
+	void addErrorBarLine(final int x1, final int y1, final int x2, final int y2) {
+		errorBarLines = ensureCapacity(errorBarLines, errorBarLinesLength + 4);
+		errorBarLines[errorBarLinesLength++] = x1;
+		errorBarLines[errorBarLinesLength++] = y1;
+		errorBarLines[errorBarLinesLength++] = x2;
+		errorBarLines[errorBarLinesLength++] = y2;
+	}
+
+	private static int[] ensureCapacity(final int[] array, final int capacity) {
+		if(capacity <= array.length)
+			return array;
+		final int[] bigger = new int[Math.max(capacity, 2*array.length)];
+		System.arraycopy(array, 0, bigger, 0, array.length);
+		return bigger;
+	}
+}
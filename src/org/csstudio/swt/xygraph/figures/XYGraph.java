@@ -77,6 +77,8 @@ public class XYGraph extends Figure{
 	
 	private ZoomType zoomType;
 	
+	private final RefreshScheduler refreshScheduler = new RefreshScheduler(this);
+	
 	/**
 	 * Constructor.
 	 */
@@ -261,6 +263,30 @@ public class XYGraph extends Figure{
 	public ZoomType getZoomType() {
 		return zoomType;
 	}
+	
+	/**Data changes of all traces are collected and refreshed together,
+	 * with one auto-scale per axis and one repaint per frame.
+	 * @param maxFrameRate the maximum number of refreshes per second for data changes.
+	 * The default value is {@link RefreshScheduler#DEFAULT_MAX_FRAME_RATE}.
+	 */
+	public void setMaxFrameRate(int maxFrameRate) {
+		refreshScheduler.setMaxFrameRate(maxFrameRate);
+	}
+	
+	/**
+	 * @return the maximum number of refreshes per second for data changes.
+	 */
+	public int getMaxFrameRate() {
+		return refreshScheduler.getMaxFrameRate();
+	}
+	
+	/**Refresh a trace in the next frame. May be called from any thread.
+	 * @param trace the trace whose data changed.
+	 * @param delay the minimum time in milliseconds until the refresh.
+	 */
+	void scheduleRefresh(Trace trace, int delay) {
+		refreshScheduler.traceChanged(trace, delay);
+	}
 
 	/**
 	 * @param title the title to set
@@ -515,12 +541,9 @@ public class XYGraph extends Figure{
 	 */
 	public void performAutoScale(){
 	    final ZoomCommand command = new ZoomCommand("Auto Scale", xAxisList, yAxisList);
-		for(Axis axis : xAxisList){
-			axis.performAutoScale(true);
-		}
-		for(Axis axis : yAxisList){
-			axis.performAutoScale(true);
-		}
+	    final List<Axis> axes = new ArrayList<Axis>(xAxisList);
+	    axes.addAll(yAxisList);
+	    AutoScaler.autoScale(axes, true);
 		command.saveState();
 		operationsManager.addCommand(command);
 	}
@@ -8,6 +8,7 @@
 package org.csstudio.swt.xygraph.linearscale;
 
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.text.Format;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -104,6 +105,28 @@ public abstract class AbstractScale extends Figure{
 	
     private Range range = new Range(min, max);
     
+    /** the formatter for the format pattern, kept until the pattern changes.
+     * Like the scale, it is only used on the UI thread.
+     */
+    private Format cachedFormat;
+    
+    private String cachedFormatPattern;
+    
+    private boolean cachedFormatIsDate;
+    
+    /** the number of fraction digits if the number format pattern only has '#'
+     * and an optional '.', so numbers can be formatted without java.text, or -1
+     */
+    private int fastFractionDigits = -1;
+    
+    private char fastDecimalSeparator;
+    
+    private char fastMinusSign;
+    
+    /** powers of ten up to the most fraction digits of the fast number format */
+    private static final long[] POWERS_OF_TEN = new long[]{1L, 10L, 100L, 1000L, 10000L,
+    	100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+    
 	/**
      * Formats the given object.
      * 
@@ -113,6 +136,26 @@ public abstract class AbstractScale extends Figure{
      */
     public String format(Object obj) {     
         	
+            resolveFormatPattern();
+            if (isDateEnabled())
+            	return getFormat(true).format(obj);
+            
+            final Format format = getFormat(false);
+            if (fastFractionDigits >= 0 && obj instanceof Double) {
+            	final String text = formatFast((Double) obj);
+            	if (text != null)
+            		return text;
+            }
+            return format.format(obj);
+   }
+    
+    /**
+     * Replaces a missing format pattern by the default pattern, like {@link #format(Object)}
+     * does before formatting. The default pattern of dates depends on the time unit.
+     * 
+     * @return the format pattern which is used to format the labels.
+     */
+    String resolveFormatPattern() {
             if (isDateEnabled()) {
               	if (formatPattern == null || formatPattern.equals("")
             			|| formatPattern.equals(default_decimal_format)
@@ -135,16 +178,80 @@ public abstract class AbstractScale extends Figure{
 	                } 
 	                autoFormat = true;
             	}
-            	return new SimpleDateFormat(formatPattern).format(obj);
-            }
-            
-            if (formatPattern == null || formatPattern.equals("")) {            	
+            } else if (formatPattern == null || formatPattern.equals("")) {            	
             	formatPattern = default_decimal_format;  
             	autoFormat = true;
-            }       
-                                
-            return new DecimalFormat(formatPattern).format(obj);
-   }
+            }
+            return formatPattern;
+    }
+    
+    /**
+     * @param date true for a date format, otherwise a number format.
+     * @return the formatter for the current format pattern.
+     */
+    private Format getFormat(boolean date) {
+    	if (cachedFormat == null || cachedFormatIsDate != date
+    			|| !formatPattern.equals(cachedFormatPattern)) {
+    		fastFractionDigits = -1;
+    		if (date)
+    			cachedFormat = new SimpleDateFormat(formatPattern);
+    		else {
+    			final DecimalFormat decimalFormat = new DecimalFormat(formatPattern);
+    			final DecimalFormatSymbols symbols = decimalFormat.getDecimalFormatSymbols();
+    			if (formatPattern.matches("#+(\\.#*)?") && symbols.getZeroDigit() == '0') { //$NON-NLS-1$
+    				final int point = formatPattern.indexOf('.');
+    				final int digits = point < 0 ? 0 : formatPattern.length() - point - 1;
+    				if (digits < POWERS_OF_TEN.length)
+    					fastFractionDigits = digits;
+    			}
+    			fastDecimalSeparator = symbols.getDecimalSeparator();
+    			fastMinusSign = symbols.getMinusSign();
+    			cachedFormat = decimalFormat;
+    		}
+    		cachedFormatPattern = formatPattern;
+    		cachedFormatIsDate = date;
+    	}
+    	return cachedFormat;
+    }
+    
+    /**Format a number like the {@link DecimalFormat} of a pattern with only '#'
+     * and an optional '.', which rounds half even to fastFractionDigits
+     * and leaves out trailing zeros of the fraction.
+     * @param value the number.
+     * @return the formatted number, or null if the DecimalFormat must decide,
+     * e.g. for a value too close to halfway between two results.
+     */
+    private String formatFast(double value) {
+    	final long power = POWERS_OF_TEN[fastFractionDigits];
+    	final double scaled = Math.abs(value) * power;
+    	if (!(scaled < 1e15))
+    		return null; // infinite, NaN or too big for exact rounding
+    	final double rounded = Math.rint(scaled);
+    	// the product may be off by an ulp, so leave results close to a tie to DecimalFormat
+    	if (Math.abs(Math.abs(scaled - rounded) - 0.5) < 1e-6 + scaled * 1e-15)
+    		return null;
+    	final long digits = (long) rounded;
+    	if (digits == 0)
+    		return value == 0 && 1/value > 0 ? "0" : null; //$NON-NLS-1$
+    	final StringBuilder text = new StringBuilder(24);
+    	if (value < 0)
+    		text.append(fastMinusSign);
+    	text.append(digits / power);
+    	long fraction = digits % power;
+    	if (fraction != 0) {
+    		int count = fastFractionDigits;
+    		while (fraction % 10 == 0) {
+    			fraction /= 10;
+    			count--;
+    		}
+    		text.append(fastDecimalSeparator);
+    		final String fractionText = Long.toString(fraction);
+    		for (int i=fractionText.length(); i<count; i++)
+    			text.append('0');
+    		text.append(fractionText);
+    	}
+    	return text.toString();
+    }
 	
 	/**
 	 * @return the majorTickMarkStepHint
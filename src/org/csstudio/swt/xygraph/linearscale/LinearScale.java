@@ -9,7 +9,6 @@ package org.csstudio.swt.xygraph.linearscale;
 
 
 import org.csstudio.swt.xygraph.util.XYGraphMediaFactory;
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.swt.SWT;
@@ -62,6 +61,12 @@ public class LinearScale extends AbstractScale {
     
     private int margin;
     
+    /** The transform from values to pixels, which is updated with the ticks:
+     *  pixels from the start = (int)((value - transformMin) * transformScale) + margin,
+     *  where the value and transformMin are the log10 values on a log scale.
+     */
+    private double transformMin, transformScale;
+    
     private final static Font DEFAULT_FONT = XYGraphMediaFactory.getInstance().getFont(
     		XYGraphMediaFactory.FONT_ARIAL);
     
@@ -80,13 +85,13 @@ public class LinearScale extends AbstractScale {
 	
 	private void calcMargin() {
 		if(isHorizontal()) {			
-			margin = (int) Math.ceil(Math.max(FigureUtilities.getTextExtents(
+			margin = (int) Math.ceil(Math.max(XYGraphMediaFactory.getInstance().getTextExtents(
 					format(getRange().getLower()),getFont()).width, 
-					FigureUtilities.getTextExtents(format(getRange().getUpper()), getFont()).width)/2.0);
+					XYGraphMediaFactory.getInstance().getTextExtents(format(getRange().getUpper()), getFont()).width)/2.0);
 		}else
-			margin = (int) Math.ceil(Math.max(FigureUtilities.getTextExtents(
+			margin = (int) Math.ceil(Math.max(XYGraphMediaFactory.getInstance().getTextExtents(
 					format(getRange().getLower()), getFont()).height, 
-					FigureUtilities.getTextExtents(format(getRange().getUpper()), getFont()).height)/2.0);
+					XYGraphMediaFactory.getInstance().getTextExtents(format(getRange().getUpper()), getFont()).height)/2.0);
 	}
 	
 	/**
@@ -172,16 +177,9 @@ public class LinearScale extends AbstractScale {
 			updateTick();
 		//coerce to range		
 		//value = value < min ? min : (value > max ? max : value);
-		int pixelsToStart =0;
-		if(logScaleEnabled){
-			if(value <=0)
-				value = min;
-			//	throw new IllegalArgumentException(
-			//			"Invalid value: value must be greater than 0");
-			pixelsToStart = (int) ((Math.log10(value) - Math.log10(min))/
-							(Math.log10(max) - Math.log10(min)) * (length - 2*margin)) + margin;
-		}else			
-			pixelsToStart = (int) ((value - min)/(max-min)*(length-2*margin)) + margin;
+		if(logScaleEnabled)
+			value = value <= 0 ? transformMin : Math.log10(value);
+		final int pixelsToStart = (int) ((value - transformMin) * transformScale) + margin;
 		
 		if(relative) {
 			if(orientation == Orientation.HORIZONTAL)
@@ -195,6 +193,30 @@ public class LinearScale extends AbstractScale {
 				return length - pixelsToStart + bounds.y;
 		}		
 	}
+	
+	/**
+	 * Get the absolute positions of many values, like {@link #getValuePosition(double, boolean)}
+	 * with relative being false, but without the overhead of a call per value.
+	 * @param values the values to find their positions.
+	 * @param positions the array which receives the positions in pixels.
+	 * @param count the number of values to convert, starting at index 0.
+	 */
+	public void valuesToPositions(double[] values, int[] positions, int count) {
+		getTransform().valuesToPositions(values, positions, count);
+	}
+	
+	/**
+	 * @return the current transform from values to absolute positions,
+	 * which may be used on other threads.
+	 */
+	public ScaleTransform getTransform() {
+		if(dirty)
+			updateTick();
+		return new ScaleTransform(getRange(), logScaleEnabled, isHorizontal(),
+				transformMin, transformScale,
+				isHorizontal() ? margin + bounds.x : length - margin + bounds.y,
+				length - 2*margin);
+	}
 
 	 /**
 	 * Get the corresponding value on the position of the scale. 
@@ -205,9 +227,6 @@ public class LinearScale extends AbstractScale {
 	 */
 	public double getPositionValue(int position, boolean relative) {
 		updateTick();
-		//coerce to range
-		double min = getRange().getLower();
-        double max = getRange().getUpper();
         int pixelsToStart;
         double value;
         if(relative){
@@ -222,11 +241,9 @@ public class LinearScale extends AbstractScale {
         		pixelsToStart = length + bounds.y - position;
         }
         	
+        value = (pixelsToStart - margin) / transformScale + transformMin;
         if(isLogScaleEnabled())
-        	value = Math.pow(10, 
-        			(pixelsToStart - margin)*(Math.log10(max)-Math.log10(min))/(length - 2*margin) + Math.log10(min));
-        else
-        	value = (pixelsToStart - margin)*(max - min)/(length - 2*margin) + min;
+        	value = Math.pow(10, value);
         
 		return value;
 	}
@@ -341,11 +358,23 @@ public class LinearScale extends AbstractScale {
 	    			getClientArea().width: getClientArea().height;    		
 	    	if(length > 2*getMargin())
 	    		tickLabels.update(length-2*getMargin());    
+	    	updateTransform();
 	    	setDirty(false);
     	}    	
     }	
 
 	
+	/** Compute the transform from values to pixels for the current range, length and margin */
+	private void updateTransform() {
+		if(logScaleEnabled){
+			transformMin = Math.log10(min);
+			transformScale = (length - 2*margin) / (Math.log10(max) - transformMin);
+		}else{
+			transformMin = min;
+			transformScale = (length - 2*margin) / (max - min);
+		}
+	}
+	
 	@Override
 	protected boolean useLocalCoordinates() {
 		return true;
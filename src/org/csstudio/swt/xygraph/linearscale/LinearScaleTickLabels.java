@@ -9,11 +9,15 @@ package org.csstudio.swt.xygraph.linearscale;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.csstudio.swt.xygraph.util.XYGraphMediaFactory;
 import org.eclipse.draw2d.Figure;
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.geometry.Dimension;
 /**
@@ -22,6 +26,56 @@ import org.eclipse.draw2d.geometry.Dimension;
  */
 public class LinearScaleTickLabels extends Figure {
 
+    /** the number of tick layouts to remember for all scales */
+    private static final int LAYOUT_CACHE_SIZE = 64;
+
+    /** the recently computed tick layouts of all scales, by everything that decides them */
+    private static final Map<List<Object>, TickLayout> layoutCache =
+    	new LinkedHashMap<List<Object>, TickLayout>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, TickLayout> eldest) {
+				return size() > LAYOUT_CACHE_SIZE;
+			}
+    	};
+
+    /** A computed tick layout, so panning or autoscale back to a
+     * recent range does not compute and measure the labels again.
+     */
+    private static class TickLayout {
+    	private final ArrayList<Double> tickLabelValues;
+    	private final ArrayList<String> tickLabels;
+    	private final ArrayList<Integer> tickLabelPositions;
+    	private final ArrayList<Boolean> tickVisibilities;
+    	private final int tickLabelMaxLength;
+    	private final int tickLabelMaxHeight;
+    	private final int gridStepInPixel;
+
+    	private TickLayout(LinearScaleTickLabels labels) {
+    		tickLabelValues = new ArrayList<Double>(labels.tickLabelValues);
+    		tickLabels = new ArrayList<String>(labels.tickLabels);
+    		tickLabelPositions = new ArrayList<Integer>(labels.tickLabelPositions);
+    		tickVisibilities = new ArrayList<Boolean>(labels.tickVisibilities);
+    		tickLabelMaxLength = labels.tickLabelMaxLength;
+    		tickLabelMaxHeight = labels.tickLabelMaxHeight;
+    		gridStepInPixel = labels.gridStepInPixel;
+    	}
+
+    	private void restore(LinearScaleTickLabels labels) {
+    		labels.tickLabelValues.clear();
+    		labels.tickLabelValues.addAll(tickLabelValues);
+    		labels.tickLabels.clear();
+    		labels.tickLabels.addAll(tickLabels);
+    		labels.tickLabelPositions.clear();
+    		labels.tickLabelPositions.addAll(tickLabelPositions);
+    		labels.tickVisibilities.clear();
+    		labels.tickVisibilities.addAll(tickVisibilities);
+    		labels.tickLabelMaxLength = tickLabelMaxLength;
+    		labels.tickLabelMaxHeight = tickLabelMaxHeight;
+    		labels.gridStepInPixel = gridStepInPixel;
+    	}
+    }
+
     /** the array of tick label vales */
     private ArrayList<Double> tickLabelValues;
 
@@ -71,6 +125,23 @@ public class LinearScaleTickLabels extends Figure {
      *            scale tick length (without margin)
      */
     protected void update(int length) {
+        // the pattern is resolved like formatting the labels would, which a cached layout skips
+        final List<Object> key = Arrays.asList(new Object[]{
+        		scale.getRange(), length, scale.getMargin(),
+        		scale.isLogScaleEnabled(), scale.isDateEnabled(), scale.isHorizontal(),
+        		scale.resolveFormatPattern(), scale.getTimeUnit(),
+        		scale.getMajorGridStep(), scale.getMajorTickMarkStepHint(),
+        		XYGraphMediaFactory.getFontKey(scale.getFont()),
+        		XYGraphMediaFactory.getFontKey(getFont())});
+        final TickLayout layout;
+        synchronized (layoutCache) {
+        	layout = layoutCache.get(key);
+		}
+        if (layout != null) {
+        	layout.restore(this);
+        	return;
+        }
+
         tickLabelValues.clear();
         tickLabels.clear();
         tickLabelPositions.clear();
@@ -84,6 +155,9 @@ public class LinearScaleTickLabels extends Figure {
 
         updateTickVisibility();
         updateTickLabelMaxLengthAndHeight();
+        synchronized (layoutCache) {
+        	layoutCache.put(key, new TickLayout(this));
+		}
     }
 
 
@@ -340,8 +414,8 @@ public class LinearScaleTickLabels extends Figure {
      */
     private boolean hasSpaceToDraw(int previousPosition, int tickLabelPosition,
             String previousTickLabel, String tickLabel) {
-        Dimension tickLabelSize = FigureUtilities.getTextExtents(tickLabel, scale.getFont());
-        Dimension previousTickLabelSize = FigureUtilities.getTextExtents(previousTickLabel, scale.getFont());
+        Dimension tickLabelSize = XYGraphMediaFactory.getInstance().getTextExtents(tickLabel, scale.getFont());
+        Dimension previousTickLabelSize = XYGraphMediaFactory.getInstance().getTextExtents(previousTickLabel, scale.getFont());
         int interval = tickLabelPosition - previousPosition;
         int textLength = (int) (scale.isHorizontal() ? (tickLabelSize.width/2.0 + previousTickLabelSize.width/2.0)  
         		: tickLabelSize.height);
@@ -349,7 +423,7 @@ public class LinearScaleTickLabels extends Figure {
        
         boolean noLapOnEnd = true;
         if(tickLabelPosition != tickLabelPositions.get(tickLabelPositions.size() - 1)){
-        	Dimension endTickLabelSize = FigureUtilities.getTextExtents(
+        	Dimension endTickLabelSize = XYGraphMediaFactory.getInstance().getTextExtents(
         		tickLabels.get(tickLabels.size()-1), scale.getFont());
         	interval = tickLabelPositions.get(tickLabelPositions.size() - 1) - tickLabelPosition;
         	textLength = (int) (scale.isHorizontal() ? (tickLabelSize.width/2.0 + endTickLabelSize.width/2.0)
@@ -367,9 +441,9 @@ public class LinearScaleTickLabels extends Figure {
         int maxHeight = 0; 
         for (int i = 0; i < tickLabels.size(); i++) {
             if (tickVisibilities.size() > i && tickVisibilities.get(i) == true) {
-            	Dimension p = FigureUtilities.getTextExtents(tickLabels.get(i), scale.getFont());
+            	Dimension p = XYGraphMediaFactory.getInstance().getTextExtents(tickLabels.get(i), scale.getFont());
             	if (tickLabels.get(0).startsWith("-") && !tickLabels.get(i).startsWith("-")) {
-                    p.width += FigureUtilities.getTextExtents("-", getFont()).width;
+                    p.width += XYGraphMediaFactory.getInstance().getTextExtents("-", getFont()).width;
                 }
                 if (p.width > maxLength) {
                     maxLength = p.width;
@@ -537,7 +611,7 @@ public class LinearScaleTickLabels extends Figure {
         for (int i = 0; i < tickLabelPositions.size(); i++) {
             if (tickVisibilities.get(i) == true) {
                 String text = tickLabels.get(i);
-                int fontWidth = FigureUtilities.getTextExtents(text, getFont()).width;
+                int fontWidth = XYGraphMediaFactory.getInstance().getTextExtents(text, getFont()).width;
                 int x = (int) Math.ceil(tickLabelPositions.get(i) - fontWidth / 2.0);// + offset);
                 grahics.drawText(text, x, 0);
             }
@@ -563,7 +637,7 @@ public class LinearScaleTickLabels extends Figure {
                 String text = tickLabels.get(i);
                 int x = 0;
                 if (tickLabels.get(0).startsWith("-") && !text.startsWith("-")) {
-                    x += FigureUtilities.getTextExtents("-", getFont()).width;
+                    x += XYGraphMediaFactory.getInstance().getTextExtents("-", getFont()).width;
                 }
                 int y = (int) Math.ceil(scale.getLength() - tickLabelPositions.get(i)
                         - fontHeight / 2.0);
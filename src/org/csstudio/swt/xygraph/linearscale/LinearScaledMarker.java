@@ -9,7 +9,6 @@ import java.util.Map;
 import org.csstudio.swt.xygraph.linearscale.AbstractScale.LabelSide;
 import org.csstudio.swt.xygraph.util.XYGraphMediaFactory;
 import org.eclipse.draw2d.Figure;
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
@@ -228,7 +227,7 @@ public class LinearScaledMarker extends Figure {
         int maxLength = 0;
         
         for (int i = 0; i < labels.length; i++) {
-                Dimension p = FigureUtilities.getTextExtents(labels[i], scale.getFont());
+                Dimension p = XYGraphMediaFactory.getInstance().getTextExtents(labels[i], scale.getFont());
                 if (p.width > maxLength) {
                     maxLength = p.width;
                 }
@@ -266,7 +265,7 @@ public class LinearScaledMarker extends Figure {
 			labels[i] = label;
 			markerValues[i] = markersMap.get(label).value;
 			markerPositions[i] = scale.getValuePosition(markerValues[i], true);
-			markerLabelDimensions[i] = FigureUtilities.getTextExtents(label, getFont());
+			markerLabelDimensions[i] = XYGraphMediaFactory.getInstance().getTextExtents(label, getFont());
 			markerColorsList.add(
 					XYGraphMediaFactory.getInstance().getColor(markersMap.get(label).color));
 			i++;
@@ -340,7 +339,7 @@ public class LinearScaledMarker extends Figure {
 		
 		if(scale.isHorizontal()) {
 			size.width = scale.getSize().width;
-			size.height = (int)Math.ceil(FigureUtilities.getTextExtents("dummy", getFont()).height) 
+			size.height = (int)Math.ceil(XYGraphMediaFactory.getInstance().getTextExtents("dummy", getFont()).height) 
 							+ GAP_BTW_MARK_LABEL + TICK_LENGTH;
 		} else {
 			updateTickLabelMaxLength();
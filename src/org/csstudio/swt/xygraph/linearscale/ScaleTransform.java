@@ -0,0 +1,136 @@
+package org.csstudio.swt.xygraph.linearscale;
+
+/** The transform of a {@link LinearScale} from values to absolute positions in pixels,
+ * as it was when the transform was created.
+ * It does not follow later changes of the scale, so it may be used on any thread.
+ */
+public class ScaleTransform {
+
+	final private Range range;
+
+	final private boolean logScaleEnabled;
+
+	final private boolean horizontal;
+
+	/** Range start, or its log10 on a log scale */
+	final private double min;
+
+	/** Pixels per value, or per decade on a log scale */
+	final private double scale;
+
+	/** Position of the range start */
+	final private int offset;
+
+	final private int tickLength;
+
+	ScaleTransform(final Range range, final boolean logScaleEnabled, final boolean horizontal,
+			final double min, final double scale, final int offset, final int tickLength) {
+		this.range = range;
+		this.logScaleEnabled = logScaleEnabled;
+		this.horizontal = horizontal;
+		this.min = min;
+		this.scale = scale;
+		this.offset = offset;
+		this.tickLength = tickLength;
+	}
+
+	/**
+	 * @param value the value to find its position.
+	 * @return the absolute position in pixels, like
+	 * {@link LinearScale#getValuePosition(double, boolean)} with relative being false.
+	 */
+	public int getValuePosition(double value) {
+		if(logScaleEnabled)
+			value = value <= 0 ? min : Math.log10(value);
+		final int pixels = (int) ((value - min) * scale);
+		return horizontal ? offset + pixels : offset - pixels;
+	}
+
+	/**
+	 * Get the absolute positions of many values.
+	 * @param values the values to find their positions.
+	 * @param positions the array which receives the positions in pixels.
+	 * @param count the number of values to convert, starting at index 0.
+	 */
+	public void valuesToPositions(final double[] values, final int[] positions, final int count) {
+		final double tMin = min;
+		final double tScale = scale;
+		if(horizontal){
+			if(logScaleEnabled)
+				for(int i=0; i<count; i++)
+					positions[i] = offset + (int) (((values[i] <= 0 ? tMin : Math.log10(values[i])) - tMin) * tScale);
+			else
+				for(int i=0; i<count; i++)
+					positions[i] = offset + (int) ((values[i] - tMin) * tScale);
+		}else{
+			if(logScaleEnabled)
+				for(int i=0; i<count; i++)
+					positions[i] = offset - (int) (((values[i] <= 0 ? tMin : Math.log10(values[i])) - tMin) * tScale);
+			else
+				for(int i=0; i<count; i++)
+					positions[i] = offset - (int) ((values[i] - tMin) * tScale);
+		}
+	}
+
+	/**
+	 * @param other a transform of the same scale at another time.
+	 * @return the number of pixels by which the positions of the other transform
+	 * have to be moved to get the positions of this transform, if the scale was only
+	 * scrolled: both are linear and have the same length, offset and pixels per value.
+	 * Otherwise {@link Integer#MIN_VALUE}.
+	 */
+	public int getScrollDistance(final ScaleTransform other) {
+		if(logScaleEnabled || other.logScaleEnabled || other.horizontal != horizontal ||
+				other.offset != offset || other.tickLength != tickLength ||
+				Math.abs(other.scale - scale) > Math.abs(scale) * 1e-9)
+			return Integer.MIN_VALUE;
+		final double pixels = (other.min - min) * scale;
+		if(!(Math.abs(pixels) < Integer.MAX_VALUE / 2))
+			return Integer.MIN_VALUE;
+		final int distance = (int) Math.round(pixels);
+		return horizontal ? distance : -distance;
+	}
+
+	/**
+	 * @return the range of the scale.
+	 */
+	public Range getRange() {
+		return range;
+	}
+
+	/**
+	 * @return true if the scale is logarithmic.
+	 */
+	public boolean isLogScaleEnabled() {
+		return logScaleEnabled;
+	}
+
+	/**
+	 * @return the length of the tick part of the scale in pixels.
+	 */
+	public int getTickLength() {
+		return tickLength;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean equals(final Object obj) {
+		if(this == obj)
+			return true;
+		if(!(obj instanceof ScaleTransform))
+			return false;
+		final ScaleTransform other = (ScaleTransform) obj;
+		return other.logScaleEnabled == logScaleEnabled && other.horizontal == horizontal &&
+			other.min == min && other.scale == scale &&
+			other.offset == offset && other.tickLength == tickLength;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		int result = (int) Double.doubleToLongBits(min);
+		result = 37*result + (int) Double.doubleToLongBits(scale);
+		result = 37*result + offset;
+		return result;
+	}
+}
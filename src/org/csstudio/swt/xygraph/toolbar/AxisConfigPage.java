@@ -38,6 +38,7 @@ public class AxisConfigPage {
 	private Button logButton;
 	
 	private Button autoScaleButton;
+	private Button autoScaleVisibleDataButton;
 	private Label maxOrAutoScaleLabel;
 	private DoubleInputText maxOrAutoScaleThrText;	
 	private Label minLabel;
@@ -124,6 +125,11 @@ public class AxisConfigPage {
 		autoScaleButton = new Button(composite, SWT.CHECK);
 		configCheckButton(autoScaleButton, "Auto Scale Enabled");
 		
+		if(!axis.isHorizontal()){
+			autoScaleVisibleDataButton = new Button(composite, SWT.CHECK);
+			configCheckButton(autoScaleVisibleDataButton, "Auto Scale to Visible Data Only");
+		}
+		
 		maxOrAutoScaleLabel = new Label(composite, 0);
 		labelGd = new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 1, 1);	
 		maxOrAutoScaleLabel.setLayoutData(labelGd);			
@@ -158,6 +164,8 @@ public class AxisConfigPage {
 					minLabel.setVisible(true);
 					minText.getText().setVisible(true);
 				}
+				if(autoScaleVisibleDataButton != null)
+					autoScaleVisibleDataButton.setEnabled(autoScaleButton.getSelection());
 				composite.getShell().layout(true, true);
 			}
 		});
@@ -248,6 +256,8 @@ public class AxisConfigPage {
 				axisColorSelector.getColorValue()));
 		axis.setPrimarySide(primaryButton.getSelection());
 		axis.setLogScale(logButton.getSelection());
+		if(autoScaleVisibleDataButton != null)
+			axis.setAutoScaleVisibleData(autoScaleVisibleDataButton.getSelection());
 		axis.setAutoScale(autoScaleButton.getSelection());
 		if(autoScaleButton.getSelection())
 			axis.setAutoScaleThreshold(maxOrAutoScaleThrText.getDoubleValue());			
@@ -289,6 +299,10 @@ public class AxisConfigPage {
 			primaryButton.setEnabled(false);
 		logButton.setSelection(axis.isLogScaleEnabled());
 		autoScaleButton.setSelection(axis.isAutoScale());
+		if(autoScaleVisibleDataButton != null){
+			autoScaleVisibleDataButton.setSelection(axis.isAutoScaleVisibleData());
+			autoScaleVisibleDataButton.setEnabled(axis.isAutoScale());
+		}
 		if(autoScaleButton.getSelection()){
 			maxOrAutoScaleLabel.setText("Auto Scale Threshold(%)");
 			maxOrAutoScaleThrText.setRange(new Range(0, 100));
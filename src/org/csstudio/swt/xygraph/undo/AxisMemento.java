@@ -17,6 +17,7 @@ public class AxisMemento {
 	private boolean logScale;
 	private boolean autoScale;
 	private double autoScaleThreshold;
+	private boolean autoScaleVisibleData;
 	private Range range;
 	private boolean dateEnabled;
 	private boolean autoFormat;
@@ -108,6 +109,18 @@ public class AxisMemento {
 	public void setAutoScaleThreshold(double autoScaleThreshold) {
 		this.autoScaleThreshold = autoScaleThreshold;
 	}
+	/**
+	 * @return the autoScaleVisibleData
+	 */
+	public boolean isAutoScaleVisibleData() {
+		return autoScaleVisibleData;
+	}
+	/**
+	 * @param autoScaleVisibleData the autoScaleVisibleData to set
+	 */
+	public void setAutoScaleVisibleData(boolean autoScaleVisibleData) {
+		this.autoScaleVisibleData = autoScaleVisibleData;
+	}
 	/**
 	 * @return the range
 	 */
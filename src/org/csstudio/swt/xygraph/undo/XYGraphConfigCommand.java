@@ -145,6 +145,7 @@ public class XYGraphConfigCommand implements IUndoableCommand {
 		memento.setLogScale(axis.isLogScaleEnabled());
 		memento.setAutoScale(axis.isAutoScale());		
 		memento.setAutoScaleThreshold(axis.getAutoScaleThreshold());			
+		memento.setAutoScaleVisibleData(axis.isAutoScaleVisibleData());
 		memento.setRange(axis.getRange());
 		memento.setDateEnabled(axis.isDateEnabled());
 		memento.setAutoFormat(axis.isAutoFormat());
@@ -163,6 +164,7 @@ public class XYGraphConfigCommand implements IUndoableCommand {
 		axis.setLogScale(memento.isLogScaleEnabled());
 		axis.setAutoScale(memento.isAutoScale());		
 		axis.setAutoScaleThreshold(memento.getAutoScaleThreshold());			
+		axis.setAutoScaleVisibleData(memento.isAutoScaleVisibleData());
 		axis.setRange(memento.getRange());
 		axis.setDateEnabled(memento.isDateEnabled());
 		axis.setAutoFormat(memento.isAutoFormat());
@@ -0,0 +1,78 @@
+package org.csstudio.swt.xygraph.util;
+
+import org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.linearscale.Range;
+
+/**Finds the data range of the samples which are visible on an axis.
+ * Unlike the axes, this does not need a display, so it may be called on any thread.
+ */
+public final class DataRangeUtil {
+
+	private DataRangeUtil() {
+	}
+
+	/** Get the range of the y data of the samples inside an x range.
+	 *  Chronological bulk data providers find the samples by binary search and
+	 *  take their range from an index, if they have one. Other data providers
+	 *  have to check every sample.
+	 *  @param provider the data provider.
+	 *  @param xRange the x range, including its bounds.
+	 *  @return the range of the y data, <code>null</code> if there is no data.
+	 */
+	public static Range getYDataMinMax(final IDataProvider provider, final Range xRange)
+	{
+		synchronized (provider)
+		{
+			final int size = provider.getSize();
+			if (size <= 0)
+				return null;
+			if (provider.isChronological() && provider instanceof IBulkDataProvider)
+			{
+				final IBulkDataProvider data = (IBulkDataProvider) provider;
+				final double[] x = new double[1];
+				int from = data.binarySearchX(xRange.getLower());
+				if (from < 0)
+					from = -from - 1;
+				// binary search finds any of several equal x values
+				while (from > 0)
+				{
+					data.getXValues(from - 1, 1, x, 0);
+					if (x[0] < xRange.getLower())
+						break;
+					from--;
+				}
+				int to = data.binarySearchX(xRange.getUpper());
+				if (to < 0)
+					to = -to - 2;
+				while (to < size - 1)
+				{
+					data.getXValues(to + 1, 1, x, 0);
+					if (x[0] > xRange.getUpper())
+						break;
+					to++;
+				}
+				if (from > to)
+					return null;
+				return data.getYDataMinMax(from, to);
+			}
+			double low = Double.POSITIVE_INFINITY;
+			double high = Double.NEGATIVE_INFINITY;
+			for (int i=0; i<size; i++)
+			{
+				final ISample sample = provider.getSample(i);
+				if (!xRange.inRange(sample.getXValue()))
+					continue;
+				final double y = sample.getYValue();
+				if (low > y - sample.getYMinusError())
+					low = y - sample.getYMinusError();
+				if (high < y + sample.getYPlusError())
+					high = y + sample.getYPlusError();
+			}
+			if (low > high)
+				return null;
+			return new Range(low, high);
+		}
+	}
+}
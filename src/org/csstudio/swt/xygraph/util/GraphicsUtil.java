@@ -1,16 +1,8 @@
 package org.csstudio.swt.xygraph.util;
 
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.Graphics;
-import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Point;
-import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.RGB;
-import org.eclipse.swt.graphics.Transform;
-import org.eclipse.swt.widgets.Display;
 
 /**Utility function for graphics operations.
  * @author Xihui Chen
@@ -30,51 +22,20 @@ public final class GraphicsUtil {
 			graphics.translate(x, y);
 			if(upToDown){
 				graphics.rotate(90);
-				graphics.drawText(text, 0, -FigureUtilities.getTextExtents(text, graphics.getFont()).height);
+				graphics.drawText(text, 0, -XYGraphMediaFactory.getInstance().getTextExtents(
+						text, graphics.getFont()).height);
 			}else{
 				graphics.rotate(270);			
-				graphics.drawText(text, -FigureUtilities.getTextWidth(text, graphics.getFont()), 0);
+				graphics.drawText(text, -XYGraphMediaFactory.getInstance().getTextExtents(
+						text, graphics.getFont()).width, 0);
 			}
 			graphics.popState();
 		} catch (Exception e) {//If rotate is not supported by the graphics.
 			graphics.popState();
-			final Dimension titleSize = FigureUtilities.getTextExtents(text, graphics.getFont());
-
-			final int w = titleSize.height;
-			final int h = titleSize.width +1;
-			Image image = new Image(Display.getCurrent(),w, h);			
-					try {
-					    final GC gc = new GC(image);	
-					    final Color titleColor = graphics.getForegroundColor();
-					    RGB transparentRGB = new RGB(240, 240, 240);		
-										
-						gc.setBackground(XYGraphMediaFactory.getInstance().getColor(transparentRGB));
-						gc.fillRectangle(image.getBounds());
-						gc.setForeground(titleColor);
-						gc.setFont(graphics.getFont());
-						final Transform tr = new Transform(Display.getCurrent());
-						if(!upToDown){
-							tr.translate(0, h);
-							tr.rotate(-90);
-							gc.setTransform(tr);
-						}else{
-							tr.translate(w, 0);
-							tr.rotate(90);
-							gc.setTransform(tr);
-						}
-						gc.drawText(text, 0, 0);
-						tr.dispose();
-						gc.dispose();
-						final ImageData imageData = image.getImageData();				
-						image.dispose();
-						imageData.transparentPixel = imageData.palette.getPixel(transparentRGB);
-						image = new Image(Display.getCurrent(), imageData);				
-								
-						graphics.drawImage(image, x, y);
-						
-					} finally{
-						image.dispose();		
-					}
+			// The rotated text is drawn into an image once and kept by the media factory
+			final Image image = XYGraphMediaFactory.getInstance().getVerticalTextImage(
+					text, graphics.getFont(), graphics.getForegroundColor().getRGB(), upToDown);
+			graphics.drawImage(image, x, y);
 		}
 	}
 	
@@ -0,0 +1,199 @@
+package org.csstudio.swt.xygraph.util;
+
+import org.csstudio.swt.xygraph.linearscale.Range;
+
+/**Clips the lines between data points to the plot area with the Liang-Barsky
+ * algorithm. Lines may be straight, or steps which are two lines through a corner.
+ * The part of the last clipped line in the plot area is kept in this object,
+ * so nothing is allocated for the segments that cross the border of the plot area.
+ */
+public class LineClipper {
+
+	/** Part of the last clipped line which is in the plot area */
+	private double x1, y1, x2, y2;
+	/** Parameters of the start and end of the clipped line, from 0 to 1 */
+	private double t0, t1;
+	/** Edges which cut the start and end of the clipped line, or NO_EDGE */
+	private int edge0, edge1;
+
+	private static final int NO_EDGE = -1, X_LOWER = 0, X_UPPER = 1, Y_LOWER = 2, Y_UPPER = 3;
+
+	/** Clip a straight line to the plot area.
+	 *  The part of the line in the plot area runs from (getX1(), getY1())
+	 *  to (getX2(), getY2()) afterwards.
+	 *  @param x1 'Start' point of line
+	 *  @param y1 'Start' point of line
+	 *  @param x2 'End' point of line
+	 *  @param y2 'End' point of line
+	 *  @param xRange x range of the plot area
+	 *  @param yRange y range of the plot area
+	 *  @return false if no part of the line is in the plot area.
+	 */
+	public boolean clipLine(final double x1, final double y1, final double x2, final double y2,
+			final Range xRange, final Range yRange)
+	{
+		if (Double.isNaN(x1) || Double.isNaN(y1) || Double.isNaN(x2) || Double.isNaN(y2))
+			return false;
+		return clipStraightLine(toFinite(x1), toFinite(y1), toFinite(x2), toFinite(y2), xRange, yRange);
+	}
+
+	/** Clip a step which goes horizontally first, then vertically:
+	 *  <pre>
+	 *             p2
+	 *              |
+	 *  p1---------corner
+	 *  </pre>
+	 *  @see #clipLine(double, double, double, double, Range, Range)
+	 */
+	public boolean clipHorizontalStep(final double x1, final double y1, final double x2, final double y2,
+			final Range xRange, final Range yRange)
+	{
+		if (Double.isNaN(x1) || Double.isNaN(y1) || Double.isNaN(x2) || Double.isNaN(y2))
+			return false;
+		final double fx2 = toFinite(x2), fy1 = toFinite(y1);
+		return clipStep(toFinite(x1), fy1, fx2, fy1, fx2, toFinite(y2), xRange, yRange);
+	}
+
+	/** Clip a step which goes vertically first, then horizontally:
+	 *  <pre>
+	 *  corner-------p2
+	 *    |
+	 *   p1
+	 *  </pre>
+	 *  @see #clipLine(double, double, double, double, Range, Range)
+	 */
+	public boolean clipVerticalStep(final double x1, final double y1, final double x2, final double y2,
+			final Range xRange, final Range yRange)
+	{
+		if (Double.isNaN(x1) || Double.isNaN(y1) || Double.isNaN(x2) || Double.isNaN(y2))
+			return false;
+		final double fx1 = toFinite(x1), fy2 = toFinite(y2);
+		return clipStep(fx1, toFinite(y1), fx1, fy2, toFinite(x2), fy2, xRange, yRange);
+	}
+
+	/** @return start of the part of the last clipped line in the plot area */
+	public double getX1() {
+		return x1;
+	}
+
+	/** @return start of the part of the last clipped line in the plot area */
+	public double getY1() {
+		return y1;
+	}
+
+	/** @return end of the part of the last clipped line in the plot area */
+	public double getX2() {
+		return x2;
+	}
+
+	/** @return end of the part of the last clipped line in the plot area */
+	public double getY2() {
+		return y2;
+	}
+
+	/** Clip the two lines of a step. Since both are parallel to the axes,
+	 *  the part of the step in the plot area is connected.
+	 */
+	private boolean clipStep(final double x1, final double y1, final double cx, final double cy,
+			final double x2, final double y2, final Range xRange, final Range yRange)
+	{
+		if (!clipStraightLine(x1, y1, cx, cy, xRange, yRange))
+			return clipStraightLine(cx, cy, x2, y2, xRange, yRange);
+		final double startX = this.x1, startY = this.y1;
+		final double endX = this.x2, endY = this.y2;
+		if (clipStraightLine(cx, cy, x2, y2, xRange, yRange))
+		{   // Enters on the first line, leaves on the second
+			this.x1 = startX;
+			this.y1 = startY;
+			return true;
+		}
+		this.x1 = startX;
+		this.y1 = startY;
+		this.x2 = endX;
+		this.y2 = endY;
+		return true;
+	}
+
+	/** Clip a straight line with finite end points */
+	private boolean clipStraightLine(final double x1, final double y1, final double x2, final double y2,
+			final Range xRange, final Range yRange)
+	{
+		final double dx = x2 - x1;
+		final double dy = y2 - y1;
+		t0 = 0;
+		t1 = 1;
+		edge0 = edge1 = NO_EDGE;
+		if (!clipEdge(-dx, x1 - xRange.getLower(), X_LOWER) ||
+			!clipEdge(dx, xRange.getUpper() - x1, X_UPPER) ||
+			!clipEdge(-dy, y1 - yRange.getLower(), Y_LOWER) ||
+			!clipEdge(dy, yRange.getUpper() - y1, Y_UPPER))
+			return false;
+		// The coordinate across the cutting edge is taken from the edge,
+		// since x1 + t * dx is inaccurate for the huge values of infinite end points
+		this.x1 = edge0 == NO_EDGE ? x1 : getEdgeX(edge0, xRange, x1 + t0 * dx);
+		this.y1 = edge0 == NO_EDGE ? y1 : getEdgeY(edge0, yRange, y1 + t0 * dy);
+		this.x2 = edge1 == NO_EDGE ? x2 : getEdgeX(edge1, xRange, x1 + t1 * dx);
+		this.y2 = edge1 == NO_EDGE ? y2 : getEdgeY(edge1, yRange, y1 + t1 * dy);
+		return true;
+	}
+
+	private static double getEdgeX(final int edge, final Range xRange, final double x)
+	{
+		if (edge == X_LOWER)
+			return xRange.getLower();
+		if (edge == X_UPPER)
+			return xRange.getUpper();
+		return x;
+	}
+
+	private static double getEdgeY(final int edge, final Range yRange, final double y)
+	{
+		if (edge == Y_LOWER)
+			return yRange.getLower();
+		if (edge == Y_UPPER)
+			return yRange.getUpper();
+		return y;
+	}
+
+	/** Narrow t0 ... t1 to the part of the line inside one edge,
+	 *  where p * t &lt;= q.
+	 *  @return false if the line is completely outside of the edge.
+	 */
+	private boolean clipEdge(final double p, final double q, final int edge)
+	{
+		if (p == 0)
+			return q >= 0;
+		final double t = q / p;
+		if (p < 0)
+		{   // Entering
+			if (t > t1)
+				return false;
+			if (t > t0)
+			{
+				t0 = t;
+				edge0 = edge;
+			}
+		}
+		else
+		{   // Leaving
+			if (t < t0)
+				return false;
+			if (t < t1)
+			{
+				t1 = t;
+				edge1 = edge;
+			}
+		}
+		return true;
+	}
+
+	/** Infinite values become lines towards the end of the axis */
+	private static double toFinite(final double value)
+	{
+		if (value == Double.POSITIVE_INFINITY)
+			return Double.MAX_VALUE / 4;
+		if (value == Double.NEGATIVE_INFINITY)
+			return -Double.MAX_VALUE / 4;
+		return value;
+	}
+}
@@ -21,11 +21,17 @@
  */
  package org.csstudio.swt.xygraph.util;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.csstudio.swt.xygraph.Activator;
 import org.eclipse.core.runtime.Plugin;
 import org.eclipse.draw2d.Cursors;
+import org.eclipse.draw2d.FigureUtilities;
+import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.jface.resource.ColorRegistry;
 import org.eclipse.jface.resource.FontRegistry;
 import org.eclipse.jface.resource.ImageDescriptor;
@@ -35,8 +41,12 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Cursor;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
@@ -79,6 +89,65 @@ public final class XYGraphMediaFactory {
 	 */
 	private HashMap<ImageDescriptor, Image> _imageCache;
 	
+	/**
+	 * The number of text extents to remember.
+	 */
+	private static final int TEXT_EXTENTS_CACHE_SIZE = 2048;
+	
+	/**
+	 * The number of vertical text images to keep.
+	 */
+	private static final int TEXT_IMAGE_CACHE_SIZE = 64;
+	
+	/**
+	 * The number of alpha images to keep.
+	 */
+	private static final int ALPHA_IMAGE_CACHE_SIZE = 64;
+	
+	/**
+	 * The recently measured text extents, by text and font.
+	 */
+	private final Map<List<Object>, Dimension> _textExtentsCache =
+		new LinkedHashMap<List<Object>, Dimension>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Dimension> eldest) {
+				return size() > TEXT_EXTENTS_CACHE_SIZE;
+			}
+		};
+	
+	/**
+	 * The recently drawn vertical text images, by text, font, color and direction.
+	 * Images are disposed when they are evicted.
+	 */
+	private final Map<List<Object>, Image> _textImageCache =
+		new LinkedHashMap<List<Object>, Image>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Image> eldest) {
+				if(size() <= TEXT_IMAGE_CACHE_SIZE)
+					return false;
+				eldest.getValue().dispose();
+				return true;
+			}
+		};
+	
+	/**
+	 * The recently used alpha images, e.g. of trace points, by key.
+	 * Images are disposed when they are evicted.
+	 */
+	private final Map<String, Image> _alphaImageCache =
+		new LinkedHashMap<String, Image>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+				if(size() <= ALPHA_IMAGE_CACHE_SIZE)
+					return false;
+				eldest.getValue().dispose();
+				return true;
+			}
+		};
+	
 	public enum CURSOR_TYPE {
 		GRABBING;
 	}
@@ -121,6 +190,18 @@ public final class XYGraphMediaFactory {
 				for (Image img : _imageCache.values()) {
 					img.dispose();
 				}
+				synchronized (_textImageCache) {
+					for (Image img : _textImageCache.values()) {
+						img.dispose();
+					}
+					_textImageCache.clear();
+				}
+				synchronized (_alphaImageCache) {
+					for (Image img : _alphaImageCache.values()) {
+						img.dispose();
+					}
+					_alphaImageCache.clear();
+				}
 			}
 		});
 
@@ -292,6 +373,138 @@ public final class XYGraphMediaFactory {
 		return _imageRegistry.get(key);
 	}
 	
+	/**Get the key of a font for caches of text metrics or images. Fonts compare by
+	 * handle, and the handle of a disposed font may be reused by a different font,
+	 * so the key is the font data.
+	 * @param font the font, or null.
+	 * @return the key, or null if the font is null or disposed.
+	 */
+	public static Object getFontKey(final Font font){
+		if(font == null || font.isDisposed())
+			return null;
+		return Arrays.asList(font.getFontData());
+	}
+	
+	/**Get the extents of a text like {@link FigureUtilities#getTextExtents(String, Font)},
+	 * but measure each text in each font only once.
+	 * @param text the text.
+	 * @param font the font.
+	 * @return the extents of the text, which the caller may modify.
+	 */
+	public Dimension getTextExtents(final String text, final Font font){
+		if(text == null || font == null || font.isDisposed())
+			return FigureUtilities.getTextExtents(text, font);
+		final List<Object> key = Arrays.asList(new Object[]{text, getFontKey(font)});
+		Dimension size;
+		synchronized (_textExtentsCache) {
+			size = _textExtentsCache.get(key);
+		}
+		if(size == null){
+			size = new Dimension(FigureUtilities.getTextExtents(text, font));
+			synchronized (_textExtentsCache) {
+				_textExtentsCache.put(key, size);
+			}
+		}
+		return new Dimension(size);
+	}
+	
+	/**Get an image of a text rotated by 90 degrees, with transparent background.
+	 * The image is kept for the next calls until it is one of the least recently
+	 * used, then it is disposed, so callers must not dispose or keep it.
+	 * @param text the text.
+	 * @param font the font of the text.
+	 * @param color the color of the text.
+	 * @param upToDown true to read the text from top to bottom, false from bottom to top.
+	 * @return the image.
+	 */
+	public Image getVerticalTextImage(final String text, final Font font, final RGB color,
+			final boolean upToDown){
+		final List<Object> key = Arrays.asList(new Object[]{text, getFontKey(font), color, upToDown});
+		synchronized (_textImageCache) {
+			final Image image = _textImageCache.get(key);
+			if(image != null && !image.isDisposed())
+				return image;
+		}
+		final Dimension titleSize = getTextExtents(text, font);
+		final int w = titleSize.height;
+		final int h = titleSize.width +1;
+		final RGB transparentRGB = new RGB(240, 240, 240);
+		final Image rotated = new Image(Display.getCurrent(), w, h);
+		final ImageData imageData;
+		try {
+			final GC gc = new GC(rotated);
+			final Transform tr = new Transform(Display.getCurrent());
+			try {
+				gc.setBackground(getColor(transparentRGB));
+				gc.fillRectangle(rotated.getBounds());
+				gc.setForeground(getColor(color));
+				gc.setFont(font);
+				if(!upToDown){
+					tr.translate(0, h);
+					tr.rotate(-90);
+				}else{
+					tr.translate(w, 0);
+					tr.rotate(90);
+				}
+				gc.setTransform(tr);
+				gc.drawText(text, 0, 0);
+			} finally {
+				tr.dispose();
+				gc.dispose();
+			}
+			imageData = rotated.getImageData();
+		} finally {
+			rotated.dispose();
+		}
+		imageData.transparentPixel = imageData.palette.getPixel(transparentRGB);
+		final Image image = new Image(Display.getCurrent(), imageData);
+		synchronized (_textImageCache) {
+			final Image previous = _textImageCache.put(key, image);
+			if(previous != null && previous != image)
+				previous.dispose();
+		}
+		return image;
+	}
+	
+	/**Get an image which was created by {@link #registerAlphaImage(String, ImageData, RGB)}.
+	 * @param key the key of the image.
+	 * @return the image, or null if it was never created or has been evicted.
+	 */
+	public Image getAlphaImage(final String key){
+		synchronized (_alphaImageCache) {
+			final Image image = _alphaImageCache.get(key);
+			return image == null || image.isDisposed() ? null : image;
+		}
+	}
+	
+	/**Create an image in one color whose transparency is given by a mask.
+	 * The image is kept for {@link #getAlphaImage(String)} until it is one of the least
+	 * recently used, then it is disposed, so callers must not dispose or keep it.
+	 * @param key the key to get the image later with {@link #getAlphaImage(String)}.
+	 * @param mask a shape drawn in white on black. The brightness of each pixel
+	 * becomes the alpha of the image, so anti-aliased edges stay smooth on any background.
+	 * @param rgb the color of the image.
+	 * @return the image.
+	 */
+	public Image registerAlphaImage(final String key, final ImageData mask, final RGB rgb){
+		final ImageData data = new ImageData(mask.width, mask.height, 24,
+				new PaletteData(0xFF0000, 0xFF00, 0xFF));
+		final int pixel = data.palette.getPixel(rgb);
+		for(int y=0; y<mask.height; y++)
+			for(int x=0; x<mask.width; x++){
+				final RGB brightness = mask.palette.getRGB(mask.getPixel(x, y));
+				data.setPixel(x, y, pixel);
+				data.setAlpha(x, y, Math.max(brightness.red, Math.max(brightness.green, brightness.blue)));
+			}
+		final Image img = new Image(Display.getCurrent(), data);
+		synchronized (_alphaImageCache) {
+			final Image previous = _alphaImageCache.put(key, img);
+			if(previous != null && previous != img)
+				previous.dispose();
+		}
+		return img;
+	}
+	
 	/**
 	 * Load the <code>Image</code> from the given path in the given plugin.
 	 * Usually, this is the image found via the the given plug-in
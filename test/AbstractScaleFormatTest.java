@@ -0,0 +1,47 @@
+import static org.junit.Assert.assertEquals;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
+import org.csstudio.swt.xygraph.linearscale.AbstractScale;
+import org.junit.Test;
+
+
+public class AbstractScaleFormatTest {
+
+	private final AbstractScale scale = new AbstractScale(){
+		@Override
+		public void updateTick() {}
+	};
+
+	@Test
+	public void testNumbersLikeDecimalFormat() {
+		final Random random = new Random(1);
+		for(String pattern : new String[]{"############.##", "##.#####", "#", "0.####E0", "#,##0.00"}){
+			scale.setFormatPattern(pattern);
+			final DecimalFormat format = new DecimalFormat(pattern);
+			final double[] values = new double[]{0, -0.0, 0.5, -0.5, 0.125, 0.375, 2.5, 1.005,
+					-0.001, 1e15, 123456789.125, Double.NaN, Double.POSITIVE_INFINITY};
+			for(double value : values)
+				assertEquals(pattern + " " + value, format.format(value), scale.format(value));
+			for(int i=0; i<10000; i++){
+				final double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 6);
+				assertEquals(pattern + " " + value, format.format(value), scale.format(value));
+			}
+		}
+	}
+
+	@Test
+	public void testPatternChange() {
+		scale.setFormatPattern("#.#");
+		assertEquals("1.3", scale.format(1.26));
+		scale.setFormatPattern("#.###");
+		assertEquals("1.26", scale.format(1.26));
+		scale.setDateEnabled(true);
+		scale.setFormatPattern("yyyy-MM-dd");
+		final Date date = new Date(0);
+		assertEquals(new SimpleDateFormat("yyyy-MM-dd").format(date), scale.format(date));
+	}
+}
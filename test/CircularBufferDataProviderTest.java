@@ -0,0 +1,109 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.csstudio.swt.xygraph.dataprovider.AbstractCircularBufferDataProvider.PlotMode;
+import org.csstudio.swt.xygraph.dataprovider.CircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.ColumnarCircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IBulkDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProviderListener;
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.junit.Test;
+
+
+public class CircularBufferDataProviderTest {
+
+	private int notifications;
+
+	private final IDataProviderListener counter = new IDataProviderListener(){
+		public void dataChanged(IDataProvider dataProvider) {
+			notifications++;
+		}
+	};
+
+	@Test
+	public void testAddSamples() {
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		data.setBufferSize(5);
+		data.addDataProviderListener(counter);
+		final double[] x = new double[]{0, 1, 2, 3, 4, 5, 6, 7};
+		final double[] y = new double[]{0, 10, 20, 30, 40, 50, 60, 70};
+		data.addSamples(x, y, 1, 3);
+		assertEquals(1, notifications);
+		assertEquals(3, data.getSize());
+		assertEquals(1, data.getSample(0).getXValue(), 0);
+		assertEquals(new Range(10, 30), data.getYDataMinMax());
+		// only the last points stay in the buffer
+		data.addSamples(x, y, 0, 8);
+		assertEquals(2, notifications);
+		assertEquals(5, data.getSize());
+		assertEquals(3, data.getSample(0).getXValue(), 0);
+		assertEquals(new Range(30, 70), data.getYDataMinMax());
+	}
+
+	@Test
+	public void testAddTimestampedSamples() {
+		final ColumnarCircularBufferDataProvider data = new ColumnarCircularBufferDataProvider(true);
+		data.setBufferSize(4);
+		data.setPlotMode(PlotMode.N_STOP);
+		data.addDataProviderListener(counter);
+		final long[] t = new long[]{1000, 2000, 3000};
+		final double[] y = new double[]{1, 2, 3};
+		data.addSamples(t, y, 0, 3);
+		data.addSamples(t, y, 0, 3);
+		assertEquals(2, notifications);
+		assertEquals(4, data.getSize());
+		assertEquals(1000, data.getSample(3).getXValue(), 0);
+		// buffer is full
+		data.addSamples(t, y, 0, 3);
+		assertEquals(2, notifications);
+	}
+
+	@Test
+	public void testColumnarSampleIsCopy() {
+		final ColumnarCircularBufferDataProvider data = new ColumnarCircularBufferDataProvider(true);
+		data.setBufferSize(2);
+		data.addSamples(new double[]{1, 2}, new double[]{10, 20}, 0, 2);
+		final ISample sample = data.getSample(0);
+		// the buffer wraps around and overwrites the slot of the sample
+		data.addSamples(new double[]{3, 4}, new double[]{30, 40}, 0, 2);
+		assertEquals(1, sample.getXValue(), 0);
+		assertEquals(10, sample.getYValue(), 0);
+		assertEquals(3, data.getSample(0).getXValue(), 0);
+	}
+
+	@Test
+	public void testYDataMinMaxOfRange() {
+		final Random random = new Random(1);
+		final double[] x = new double[2500];
+		final double[] y = new double[x.length];
+		for(int i=0; i<x.length; i++){
+			x[i] = i;
+			y[i] = random.nextInt(20) == 0 ? Double.NaN : random.nextGaussian();
+		}
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		data.setBufferSize(1000);
+		data.addSamples(x, y, 0, x.length);
+		final ColumnarCircularBufferDataProvider columnarData = new ColumnarCircularBufferDataProvider(true);
+		columnarData.setBufferSize(1000);
+		columnarData.addSamples(x, y, 0, x.length);
+		for(IBulkDataProvider provider : new IBulkDataProvider[]{data, columnarData}){
+			for(int i=0; i<1000; i++){
+				final int from = random.nextInt(1000);
+				final int to = Math.min(999, from + random.nextInt(random.nextBoolean() ? 3 : 1000 - from));
+				double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+				for(int j=from; j<=to; j++){
+					final double value = provider.getSample(j).getYValue();
+					if(!Double.isNaN(value)){
+						min = Math.min(min, value);
+						max = Math.max(max, value);
+					}
+				}
+				final Range expected = min > max ? null : new Range(min, max);
+				assertEquals(from + "..." + to, expected, provider.getYDataMinMax(from, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.csstudio.swt.xygraph.dataprovider.ColumnarCircularBuffer;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.junit.Test;
+
+
+public class ColumnarCircularBufferTest {
+
+	private ColumnarCircularBuffer circularBuffer;
+
+	@Test
+	public void testAdd() {
+		circularBuffer = new ColumnarCircularBuffer(5);
+		for(int i=0; i<10; i++){
+			circularBuffer.add(i, 10*i);
+		}
+		assertEquals(5, circularBuffer.size());
+		for(int i=0; i<5; i++){
+			assertEquals(i+5, circularBuffer.getXValue(i), 0);
+			assertEquals(10*(i+5), circularBuffer.getYValue(i), 0);
+		}
+		assertFalse(circularBuffer.hasErrors());
+	}
+
+	@Test
+	public void testErrorColumns() {
+		circularBuffer = new ColumnarCircularBuffer(5);
+		circularBuffer.add(0, 0);
+		circularBuffer.add(new Sample(1, 1, 0.5, 0.25, 0, 0, "info"));
+		circularBuffer.add(2, 2);
+		assertTrue(circularBuffer.hasErrors());
+		assertEquals(0, circularBuffer.getYPlusError(0), 0);
+		assertEquals(0.5, circularBuffer.getYPlusError(1), 0);
+		assertEquals(0.25, circularBuffer.getYMinusError(1), 0);
+		assertEquals(0, circularBuffer.getYPlusError(2), 0);
+		assertEquals("", circularBuffer.getInfo(0));
+		assertEquals("info", circularBuffer.getInfo(1));
+	}
+
+	@Test
+	public void testSetBufferSize() {
+		circularBuffer = new ColumnarCircularBuffer(5);
+		for(int i=0; i<7; i++){
+			circularBuffer.add(i, i);
+		}
+		//test expand
+		circularBuffer.setBufferSize(8, false);
+		assertEquals(5, circularBuffer.size());
+		assertEquals(2, circularBuffer.getXValue(0), 0);
+		for(int i=7; i<10; i++){
+			circularBuffer.add(i, i);
+		}
+		assertEquals(8, circularBuffer.size());
+		assertEquals(9, circularBuffer.getXValue(7), 0);
+		//test shrink
+		circularBuffer.setBufferSize(5, false);
+		assertEquals(5, circularBuffer.size());
+		assertEquals(2, circularBuffer.getXValue(0), 0);
+		assertEquals(6, circularBuffer.getXValue(4), 0);
+		circularBuffer.add(10, 10);
+		assertEquals(3, circularBuffer.getXValue(0), 0);
+		assertEquals(10, circularBuffer.getXValue(4), 0);
+	}
+
+	@Test
+	public void testCopyValues() {
+		circularBuffer = new ColumnarCircularBuffer(5);
+		for(int i=0; i<8; i++){
+			circularBuffer.add(i, 10*i);
+		}
+		//the elements wrap around the end of the columns
+		final double[] x = new double[6];
+		final double[] y = new double[6];
+		circularBuffer.copyXValues(0, 5, x, 1);
+		circularBuffer.copyYValues(1, 3, y, 0);
+		assertArrayEquals(new double[]{0, 3, 4, 5, 6, 7}, x, 0);
+		assertArrayEquals(new double[]{40, 50, 60, 0, 0, 0}, y, 0);
+	}
+
+	@Test
+	public void testCopyErrors() {
+		circularBuffer = new ColumnarCircularBuffer(3);
+		final double[] yPlus = new double[]{9, 9, 9};
+		circularBuffer.add(0, 0);
+		//no error columns yet
+		circularBuffer.copyErrors(0, 1, null, null, yPlus, null, 0);
+		assertArrayEquals(new double[]{0, 9, 9}, yPlus, 0);
+		for(int i=1; i<5; i++)
+			circularBuffer.add(new Sample(i, i, i, 2*i, 0, 0));
+		//the elements 2, 3, 4 wrap around the end of the columns
+		final double[] yMinus = new double[3];
+		circularBuffer.copyErrors(0, 3, null, null, yPlus, yMinus, 0);
+		assertArrayEquals(new double[]{2, 3, 4}, yPlus, 0);
+		assertArrayEquals(new double[]{4, 6, 8}, yMinus, 0);
+	}
+
+	@Test
+	public void testBinarySearchX() {
+		circularBuffer = new ColumnarCircularBuffer(5);
+		for(int i=0; i<8; i++){
+			circularBuffer.add(2*i, i);
+		}
+		//x values are 6, 8, 10, 12, 14
+		assertEquals(0, circularBuffer.binarySearchX(6));
+		assertEquals(4, circularBuffer.binarySearchX(14));
+		assertEquals(-1, circularBuffer.binarySearchX(5));
+		assertEquals(-3, circularBuffer.binarySearchX(9));
+		assertEquals(-6, circularBuffer.binarySearchX(15));
+	}
+
+	@Test
+	public void testView() {
+		circularBuffer = new ColumnarCircularBuffer(102400);
+		for(int i=0; i<200000; i++){
+			circularBuffer.add(i, -i);
+		}
+		final ColumnarCircularBuffer.SampleView view = circularBuffer.createView();
+		for(int i=0; i<circularBuffer.size(); i++){
+			view.setIndex(i);
+			assertEquals(200000-102400+i, view.getXValue(), 0);
+			assertEquals(-(200000-102400+i), view.getYValue(), 0);
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.csstudio.swt.xygraph.dataprovider.CircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.DataRangeTree;
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.junit.Test;
+
+
+public class DataRangeTreeTest {
+
+	@Test
+	public void testDataMinMax() {
+		final Random random = new Random(42);
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(false);
+		data.setBufferSize(300);
+		for(int i=0; i<1000; i++){
+			data.addSample(new Sample(random.nextGaussian(), random.nextGaussian(),
+					random.nextDouble(), random.nextDouble(), 0, 0));
+			final double[] expected = scan(data, 0, data.getSize()-1);
+			assertEquals(new Range(expected[0], expected[1]), data.getXDataMinMax());
+			assertEquals(new Range(expected[2], expected[3]), data.getYDataMinMax());
+		}
+		data.setBufferSize(200);
+		double[] expected = scan(data, 0, data.getSize()-1);
+		assertEquals(new Range(expected[2], expected[3]), data.getYDataMinMax());
+		data.clearTrace();
+		data.addSample(new Sample(1, 2));
+		assertEquals(new Range(2, 2), data.getYDataMinMax());
+	}
+
+	@Test
+	public void testNaN() {
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		data.addSample(new Sample(0, Double.NaN));
+		assertTrue(Double.isNaN(data.getYDataMinMax().getLower()));
+		data.addSample(new Sample(1, 5));
+		data.addSample(new Sample(2, Double.NaN));
+		data.addSample(new Sample(3, -5));
+		assertEquals(new Range(-5, 5), data.getYDataMinMax());
+	}
+
+	@Test
+	public void testSubRanges() {
+		final Random random = new Random(7);
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(false);
+		data.setBufferSize(1000);
+		final DataRangeTree tree = new DataRangeTree(data, 1000);
+		final double[] range = new double[4];
+		for(int i=0; i<2500; i++){
+			final Sample sample = new Sample(i, random.nextDouble());
+			data.addSample(sample);
+			tree.add(sample);
+			final int from = random.nextInt(data.getSize());
+			final int to = from + random.nextInt(data.getSize() - from);
+			tree.getDataRange(from, to, range);
+			final double[] expected = scan(data, from, to);
+			for(int j=0; j<4; j++)
+				assertEquals(expected[j], range[j], 0);
+		}
+	}
+
+	private double[] scan(CircularBufferDataProvider data, int from, int to){
+		final double[] range = new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for(int i=from; i<=to; i++){
+			final ISample s = data.getSample(i);
+			range[0] = Math.min(range[0], s.getXValue() - s.getXMinusError());
+			range[1] = Math.max(range[1], s.getXValue() + s.getXPlusError());
+			range[2] = Math.min(range[2], s.getYValue() - s.getYMinusError());
+			range[3] = Math.max(range[3], s.getYValue() + s.getYPlusError());
+		}
+		return range;
+	}
+}
@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.csstudio.swt.xygraph.dataprovider.CircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.ColumnarCircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.csstudio.swt.xygraph.util.DataRangeUtil;
+import org.junit.Test;
+
+
+public class DataRangeUtilTest {
+
+	@Test
+	public void testEmpty() {
+		assertNull(DataRangeUtil.getYDataMinMax(new CircularBufferDataProvider(true), new Range(0, 10)));
+	}
+
+	@Test
+	public void testEqualXValues() {
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		final double[] x = new double[]{0, 1, 2, 2, 2, 3, 4, 5, 6, 7};
+		final double[] y = new double[]{0, 10, -5, 50, -20, 30, 40, 60, 70, 80};
+		data.setBufferSize(x.length);
+		data.addSamples(x, y, 0, x.length);
+		// every sample with the x value at the edge of the window is found
+		assertEquals(new Range(-20, 50), DataRangeUtil.getYDataMinMax(data, new Range(2, 3)));
+		assertEquals(new Range(-20, 50), DataRangeUtil.getYDataMinMax(data, new Range(0, 2)));
+		assertEquals(new Range(-20, 50), DataRangeUtil.getYDataMinMax(data, new Range(1.5, 2)));
+		assertEquals(new Range(10, 10), DataRangeUtil.getYDataMinMax(data, new Range(0.5, 1.5)));
+		// no samples in the window
+		assertNull(DataRangeUtil.getYDataMinMax(data, new Range(2.2, 2.8)));
+		assertNull(DataRangeUtil.getYDataMinMax(data, new Range(10, 20)));
+		assertNull(DataRangeUtil.getYDataMinMax(data, new Range(-20, -10)));
+	}
+
+	@Test
+	public void testRandomRanges() {
+		final Random random = new Random(3);
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		final ColumnarCircularBufferDataProvider columnarData = new ColumnarCircularBufferDataProvider(true);
+		final CircularBufferDataProvider unsortedData = new CircularBufferDataProvider(false);
+		final IDataProvider[] providers = new IDataProvider[]{data, columnarData, unsortedData};
+		data.setBufferSize(1000);
+		columnarData.setBufferSize(1000);
+		unsortedData.setBufferSize(1000);
+		// runs of equal x values, NaN and errors, and the buffers wrap around
+		double x = 0;
+		for(int i=0; i<2500; i++){
+			if(random.nextInt(3) != 0)
+				x += 1 + random.nextInt(3);
+			final double y = random.nextInt(20) == 0 ? Double.NaN : random.nextGaussian();
+			final double error = random.nextInt(5) == 0 ? random.nextDouble() : 0;
+			final Sample sample = new Sample(x, y, error, error, 0, 0);
+			data.addSample(sample);
+			columnarData.addSample(sample);
+			unsortedData.addSample(sample);
+		}
+		final double first = data.getSample(0).getXValue();
+		final double last = data.getSample(data.getSize() - 1).getXValue();
+		for(int i=0; i<2000; i++){
+			final Range xRange = new Range(getRandomX(random, data, first, last),
+					getRandomX(random, data, first, last));
+			final Range expected = getYDataMinMax(data, xRange);
+			for(IDataProvider provider : providers)
+				assertEquals(xRange.toString(), expected, DataRangeUtil.getYDataMinMax(provider, xRange));
+		}
+	}
+
+	/** @return the x value of a sample, or any x value, possibly outside of the data */
+	private double getRandomX(final Random random, final IDataProvider data, final double first, final double last) {
+		if(random.nextBoolean())
+			return data.getSample(random.nextInt(data.getSize())).getXValue();
+		return first - 20 + random.nextDouble() * (last - first + 40);
+	}
+
+	/** Brute force: check every sample */
+	private Range getYDataMinMax(final IDataProvider data, final Range xRange) {
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for(int i=0; i<data.getSize(); i++){
+			final ISample sample = data.getSample(i);
+			if(sample.getXValue() >= xRange.getLower() && sample.getXValue() <= xRange.getUpper()
+					&& !Double.isNaN(sample.getYValue())){
+				min = Math.min(min, sample.getYValue() - sample.getYMinusError());
+				max = Math.max(max, sample.getYValue() + sample.getYPlusError());
+			}
+		}
+		return min > max ? null : new Range(min, max);
+	}
+}
@@ -0,0 +1,105 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.csstudio.swt.xygraph.dataprovider.ColumnarCircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDecimatingDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.MinMaxPyramid;
+import org.csstudio.swt.xygraph.dataprovider.CircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.junit.Test;
+
+
+public class DecimationTest {
+
+	@Test
+	public void testPyramid() {
+		final Random random = new Random(3);
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		data.setBufferSize(500);
+		final MinMaxPyramid pyramid = new MinMaxPyramid(data, 500);
+		final int[] result = new int[3];
+		for(int i=0; i<1500; i++){
+			final double y = random.nextInt(10) == 0 ? Double.NaN : random.nextDouble();
+			data.addSample(new Sample(i, y));
+			pyramid.add(y);
+			final int from = random.nextInt(data.getSize());
+			final int to = from + random.nextInt(data.getSize() - from);
+			pyramid.getYMinMaxIndex(from, to, result);
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			int nan = 0;
+			for(int j=from; j<=to; j++){
+				final double value = data.getSample(j).getYValue();
+				if(Double.isNaN(value))
+					nan++;
+				else{
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+			}
+			assertEquals(nan, result[2]);
+			if(nan == to - from + 1)
+				assertEquals(-1, result[0]);
+			else{
+				assertEquals(min, data.getSample(result[0]).getYValue(), 0);
+				assertEquals(max, data.getSample(result[1]).getYValue(), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testDecimatedIndices() {
+		final Random random = new Random(5);
+		final ColumnarCircularBufferDataProvider data = new ColumnarCircularBufferDataProvider(true);
+		data.setBufferSize(10000);
+		double x = 0;
+		for(int i=0; i<12000; i++){
+			x += random.nextDouble();
+			data.addSample(new Sample(x, random.nextGaussian()));
+		}
+		final int from = 100, to = 9800;
+		final double xMin = data.getSample(500).getXValue();
+		final double xMax = data.getSample(9500).getXValue();
+		final int columns = 200;
+		final int[] indices = new int[4*(columns+2)];
+		final int count = ((IDecimatingDataProvider)data).getDecimatedIndices(
+				from, to, xMin, xMax, columns, indices);
+		assertTrue(count > 0 && count <= indices.length);
+
+		// Expected: first, min, max, last of every column
+		final TreeSet<Integer> expected = new TreeSet<Integer>();
+		int start = from;
+		while(start <= to){
+			final int column = column(data.getSample(start).getXValue(), xMin, xMax, columns);
+			int end = start;
+			int min = start, max = start;
+			while(end+1 <= to && column(data.getSample(end+1).getXValue(), xMin, xMax, columns) == column){
+				end++;
+				if(data.getSample(end).getYValue() < data.getSample(min).getYValue())
+					min = end;
+				if(data.getSample(end).getYValue() > data.getSample(max).getYValue())
+					max = end;
+			}
+			expected.add(start);
+			expected.add(min);
+			expected.add(max);
+			expected.add(end);
+			start = end + 1;
+		}
+		assertEquals(expected.size(), count);
+		int i = 0;
+		for(int index : expected)
+			assertEquals(index, indices[i++]);
+
+		// Too small for the result
+		assertEquals(-1, ((IDecimatingDataProvider)data).getDecimatedIndices(
+				from, to, xMin, xMax, columns, new int[10]));
+	}
+
+	private static int column(double x, double xMin, double xMax, int columns){
+		final double column = Math.floor((x - xMin) * (columns / (xMax - xMin)));
+		return column < 0 ? -1 : (column >= columns ? columns : (int) column);
+	}
+}
@@ -0,0 +1,117 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.csstudio.swt.xygraph.util.LineClipper;
+import org.junit.Test;
+
+
+public class LineClipperTest {
+
+	private static final double INF = Double.POSITIVE_INFINITY;
+	private static final Range X_RANGE = new Range(0, 10);
+	private static final Range Y_RANGE = new Range(0, 10);
+
+	private final LineClipper clipper = new LineClipper();
+
+	@Test
+	public void testStraightLine() {
+		// inside
+		assertTrue(clipper.clipLine(1, 1, 9, 9, X_RANGE, Y_RANGE));
+		assertClipped(1, 1, 9, 9);
+		// entering
+		assertTrue(clipper.clipLine(-5, 5, 5, 5, X_RANGE, Y_RANGE));
+		assertClipped(0, 5, 5, 5);
+		assertTrue(clipper.clipLine(5, -5, 5, 5, X_RANGE, Y_RANGE));
+		assertClipped(5, 0, 5, 5);
+		// leaving
+		assertTrue(clipper.clipLine(5, 5, 15, 10, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 10, 7.5);
+		// crossing
+		assertTrue(clipper.clipLine(-5, -5, 15, 15, X_RANGE, Y_RANGE));
+		assertClipped(0, 0, 10, 10);
+		assertTrue(clipper.clipLine(15, 5, -5, 5, X_RANGE, Y_RANGE));
+		assertClipped(10, 5, 0, 5);
+		// fully outside
+		assertFalse(clipper.clipLine(-5, 12, 5, 22, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipLine(11, 1, 12, 5, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipLine(-5, -1, 15, -1, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipLine(Double.NaN, 5, 5, 5, X_RANGE, Y_RANGE));
+		// infinite end points
+		assertTrue(clipper.clipLine(5, 5, 5, INF, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 5, 10);
+		assertTrue(clipper.clipLine(-INF, 5, 5, 5, X_RANGE, Y_RANGE));
+		assertClipped(0, 5, 5, 5);
+		assertFalse(clipper.clipLine(11, 5, 11, -INF, X_RANGE, Y_RANGE));
+	}
+
+	@Test
+	public void testHorizontalStep() {
+		// inside
+		assertTrue(clipper.clipHorizontalStep(1, 1, 9, 9, X_RANGE, Y_RANGE));
+		assertClipped(1, 1, 9, 9);
+		// entering on the first or the second line
+		assertTrue(clipper.clipHorizontalStep(-5, 5, 5, 8, X_RANGE, Y_RANGE));
+		assertClipped(0, 5, 5, 8);
+		assertTrue(clipper.clipHorizontalStep(-5, -5, 5, 5, X_RANGE, Y_RANGE));
+		assertClipped(5, 0, 5, 5);
+		// leaving on the first or the second line
+		assertTrue(clipper.clipHorizontalStep(5, 5, 15, 8, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 10, 5);
+		assertTrue(clipper.clipHorizontalStep(5, 5, 8, 15, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 8, 10);
+		// crossing, entering on the first line and leaving on the second
+		assertTrue(clipper.clipHorizontalStep(-5, 5, 5, 15, X_RANGE, Y_RANGE));
+		assertClipped(0, 5, 5, 10);
+		// fully outside, although the straight line crosses the plot area
+		assertTrue(clipper.clipLine(1, -5, 15, 5, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipHorizontalStep(1, -5, 15, 5, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipHorizontalStep(5, 5, 5, Double.NaN, X_RANGE, Y_RANGE));
+		// infinite end points
+		assertTrue(clipper.clipHorizontalStep(1, 5, 5, INF, X_RANGE, Y_RANGE));
+		assertClipped(1, 5, 5, 10);
+		assertTrue(clipper.clipHorizontalStep(-INF, 5, 5, 8, X_RANGE, Y_RANGE));
+		assertClipped(0, 5, 5, 8);
+		assertTrue(clipper.clipHorizontalStep(5, -INF, 8, 5, X_RANGE, Y_RANGE));
+		assertClipped(8, 0, 8, 5);
+	}
+
+	@Test
+	public void testVerticalStep() {
+		// inside
+		assertTrue(clipper.clipVerticalStep(1, 1, 9, 9, X_RANGE, Y_RANGE));
+		assertClipped(1, 1, 9, 9);
+		// entering on the first or the second line
+		assertTrue(clipper.clipVerticalStep(5, -5, 8, 5, X_RANGE, Y_RANGE));
+		assertClipped(5, 0, 8, 5);
+		assertTrue(clipper.clipVerticalStep(-5, -5, 5, 5, X_RANGE, Y_RANGE));
+		assertClipped(0, 5, 5, 5);
+		// leaving on the first or the second line
+		assertTrue(clipper.clipVerticalStep(5, 5, 8, 15, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 5, 10);
+		assertTrue(clipper.clipVerticalStep(5, 5, 15, 8, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 10, 8);
+		// crossing, entering on the first line and leaving on the second
+		assertTrue(clipper.clipVerticalStep(5, -5, 15, 5, X_RANGE, Y_RANGE));
+		assertClipped(5, 0, 10, 5);
+		// fully outside, although the straight line crosses the plot area
+		assertTrue(clipper.clipLine(-5, 1, 5, 15, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipVerticalStep(-5, 1, 5, 15, X_RANGE, Y_RANGE));
+		assertFalse(clipper.clipVerticalStep(Double.NaN, 5, 5, 5, X_RANGE, Y_RANGE));
+		// infinite end points
+		assertTrue(clipper.clipVerticalStep(5, -INF, 8, 5, X_RANGE, Y_RANGE));
+		assertClipped(5, 0, 8, 5);
+		assertTrue(clipper.clipVerticalStep(5, 5, INF, 8, X_RANGE, Y_RANGE));
+		assertClipped(5, 5, 10, 8);
+		assertTrue(clipper.clipVerticalStep(-INF, 5, 5, 8, X_RANGE, Y_RANGE));
+		assertClipped(0, 8, 5, 8);
+	}
+
+	private void assertClipped(final double x1, final double y1, final double x2, final double y2) {
+		assertEquals(x1, clipper.getX1(), 1e-9);
+		assertEquals(y1, clipper.getY1(), 1e-9);
+		assertEquals(x2, clipper.getX2(), 1e-9);
+		assertEquals(y2, clipper.getY2(), 1e-9);
+	}
+}
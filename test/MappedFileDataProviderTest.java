@@ -0,0 +1,88 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.csstudio.swt.xygraph.dataprovider.CircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.MappedFileDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.junit.Test;
+
+
+public class MappedFileDataProviderTest {
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		final Random random = new Random(11);
+		final CircularBufferDataProvider source = new CircularBufferDataProvider(true);
+		source.setBufferSize(5000);
+		for(int i=0; i<5000; i++)
+			source.addSample(new Sample(2*i, random.nextInt(20) == 0 ? Double.NaN : random.nextGaussian()));
+		final File file = File.createTempFile("xygraph", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		MappedFileDataProvider.write(file, source);
+
+		final MappedFileDataProvider data = new MappedFileDataProvider(file);
+		try{
+			assertTrue(data.isChronological());
+			// the file decides, only the current value is accepted
+			data.setChronological(true);
+			try{
+				data.setChronological(false);
+				fail();
+			}catch (IllegalArgumentException e) {
+			}
+			assertEquals(5000, data.getSize());
+			assertEquals(source.getXDataMinMax(), data.getXDataMinMax());
+			assertEquals(source.getYDataMinMax(), data.getYDataMinMax());
+			final double[] y = new double[5000];
+			data.getYValues(0, 5000, y, 0);
+			for(int i=0; i<5000; i++){
+				assertEquals(2*i, data.getSample(i).getXValue(), 0);
+				assertEquals(source.getSample(i).getYValue(), y[i], 0);
+			}
+			assertEquals(21, data.binarySearchX(42));
+			assertEquals(-23, data.binarySearchX(43));
+
+			// the index gives the same result as scanning all samples
+			final int columns = 100;
+			final int[] expected = new int[8*(columns+2)];
+			final int[] actual = new int[8*(columns+2)];
+			final int count = source.getDecimatedIndices(10, 4999, 100, 9000, columns, expected);
+			assertEquals(count, data.getDecimatedIndices(10, 4999, 100, 9000, columns, actual));
+			for(int i=0; i<count; i++)
+				assertEquals(expected[i], actual[i]);
+
+			// and so does the y range of a part of the samples
+			for(int i=0; i<1000; i++){
+				final int from = random.nextInt(5000);
+				final int to = Math.min(4999, from + random.nextInt(random.nextBoolean() ? 3 : 5000 - from));
+				assertEquals(from + "..." + to, source.getYDataMinMax(from, to), data.getYDataMinMax(from, to)); //$NON-NLS-1$
+			}
+			assertEquals(null, data.getYDataMinMax(10, 9));
+		}finally{
+			data.close();
+		}
+	}
+
+	@Test(expected=IOException.class)
+	public void testWrongFormat() throws IOException {
+		final File file = File.createTempFile("xygraph", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		new MappedFileDataProvider(file);
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		final File file = File.createTempFile("xygraph", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+		file.deleteOnExit();
+		MappedFileDataProvider.write(file, new CircularBufferDataProvider(false));
+		final MappedFileDataProvider data = new MappedFileDataProvider(file);
+		assertEquals(0, data.getSize());
+		assertEquals(null, data.getYDataMinMax());
+		data.close();
+	}
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.swt.xygraph.dataprovider.IArchiveSource;
+import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProviderListener;
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.dataprovider.PagedArchiveDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.csstudio.swt.xygraph.linearscale.Range;
+import org.junit.Test;
+
+
+public class PagedArchiveDataProviderTest {
+
+	/** One sample per x unit, y = 2x */
+	private final AtomicInteger reads = new AtomicInteger();
+	private final IArchiveSource source = new IArchiveSource(){
+		public List<ISample> getSamples(double start, double end) {
+			reads.incrementAndGet();
+			final List<ISample> samples = new ArrayList<ISample>();
+			for(double x = Math.ceil(start); x < end; x++)
+				samples.add(new Sample(x, 2*x));
+			return samples;
+		}
+	};
+
+	@Test
+	public void testPaging() throws InterruptedException {
+		final PagedArchiveDataProvider data = new PagedArchiveDataProvider(source, 100, 10);
+		try{
+			data.setVisibleRange(new Range(250, 420));
+			waitForPages(data);
+			// pages 2..4 are visible, 1 and 5 are loaded in advance
+			assertEquals(5, reads.get());
+			assertEquals(500, data.getSize());
+			assertEquals(100, data.getSample(0).getXValue(), 0);
+			assertEquals(599, data.getSample(499).getXValue(), 0);
+			assertEquals(new Range(200, 1198), data.getYDataMinMax());
+			assertEquals(350, data.binarySearchX(450));
+
+			// panning by a page only loads the new neighbor
+			data.setVisibleRange(new Range(350, 520));
+			waitForPages(data);
+			assertEquals(6, reads.get());
+			assertEquals(200, data.getSample(0).getXValue(), 0);
+
+			// pages in the cache are not loaded again
+			data.setVisibleRange(new Range(250, 420));
+			waitForPages(data);
+			assertEquals(6, reads.get());
+			assertEquals(100, data.getSample(0).getXValue(), 0);
+		}finally{
+			data.dispose();
+		}
+	}
+
+	@Test
+	public void testRetryFailedPage() throws InterruptedException {
+		final AtomicInteger failures = new AtomicInteger(1);
+		final IArchiveSource failingSource = new IArchiveSource(){
+			public List<ISample> getSamples(double start, double end) throws Exception {
+				if(start == 200 && failures.getAndDecrement() > 0)
+					throw new Exception("Archive not reachable"); //$NON-NLS-1$
+				return source.getSamples(start, end);
+			}
+		};
+		final PagedArchiveDataProvider data = new PagedArchiveDataProvider(failingSource, 100, 10);
+		try{
+			data.setVisibleRange(new Range(250, 420));
+			waitForPages(data);
+			assertNotNull(data.getLastError());
+			assertEquals(400, data.getSize());
+			// the same range again loads the failed page
+			data.setVisibleRange(new Range(250, 420));
+			waitForPages(data);
+			assertEquals(500, data.getSize());
+			// only the failed page was read again
+			assertEquals(5, reads.get());
+		}finally{
+			data.dispose();
+		}
+	}
+
+	@Test
+	public void testListenersOnUIThread() throws InterruptedException, ExecutionException {
+		final ExecutorService ui = Executors.newSingleThreadExecutor(new ThreadFactory(){
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "UI"); //$NON-NLS-1$
+			}
+		});
+		final PagedArchiveDataProvider data = new PagedArchiveDataProvider(source, 100, 10);
+		data.setUIExecutor(ui);
+		final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+		data.addDataProviderListener(new IDataProviderListener(){
+			public void dataChanged(IDataProvider dataProvider) {
+				threads.add(Thread.currentThread().getName());
+			}
+		});
+		try{
+			// like the x axis, which calls it on the UI thread
+			ui.submit(new Runnable(){
+				public void run() {
+					data.setVisibleRange(new Range(250, 420));
+				}
+			}).get();
+			waitForPages(data);
+			// the new range, then at least one notification about the loaded pages
+			for(int i=0; i<500 && threads.size() < 2; i++)
+				Thread.sleep(10);
+			assertTrue(threads.size() >= 2);
+			for(String thread : threads.toArray(new String[threads.size()]))
+				assertEquals("UI", thread); //$NON-NLS-1$
+		}finally{
+			data.dispose();
+			ui.shutdown();
+		}
+	}
+
+	private void waitForPages(PagedArchiveDataProvider data) throws InterruptedException {
+		for(int i=0; i<500 && data.isLoading(); i++)
+			Thread.sleep(10);
+		assertFalse(data.isLoading());
+	}
+}
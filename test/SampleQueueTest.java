@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.csstudio.swt.xygraph.dataprovider.SampleQueue;
+import org.junit.Test;
+
+
+public class SampleQueueTest {
+
+	@Test
+	public void testOfferPoll() {
+		final SampleQueue queue = new SampleQueue(3);
+		assertEquals(4, queue.getCapacity());
+		assertTrue(queue.isEmpty());
+		for(int i=0; i<4; i++)
+			assertTrue(queue.offer(i, 10*i));
+		assertFalse(queue.offer(4, 40));
+		final double[] x = new double[10];
+		final double[] y = new double[10];
+		assertEquals(3, queue.poll(x, y, 1, 3));
+		assertEquals(0, x[1], 0);
+		assertEquals(20, y[3], 0);
+		assertTrue(queue.offer(5, 50));
+		assertEquals(2, queue.poll(x, y, 0, 10));
+		assertEquals(3, x[0], 0);
+		assertEquals(50, y[1], 0);
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.poll(x, y, 0, 10));
+	}
+
+	@Test
+	public void testConcurrentProducers() throws InterruptedException {
+		final SampleQueue queue = new SampleQueue(256);
+		final int producers = 4;
+		final int points = 20000;
+		final Thread[] threads = new Thread[producers];
+		for(int p=0; p<producers; p++){
+			final int producer = p;
+			threads[p] = new Thread(){
+				@Override
+				public void run() {
+					for(int i=0; i<points; i++)
+						while(!queue.offer(producer, i))
+							Thread.yield();
+				}
+			};
+			threads[p].start();
+		}
+		// every producer's points must arrive complete and in order
+		final int[] next = new int[producers];
+		final double[] x = new double[64];
+		final double[] y = new double[64];
+		int received = 0;
+		while(received < producers * points){
+			final int count = queue.poll(x, y, 0, x.length);
+			for(int i=0; i<count; i++){
+				final int producer = (int) x[i];
+				assertEquals(next[producer]++, (int) y[i]);
+			}
+			received += count;
+		}
+		for(Thread thread : threads)
+			thread.join();
+		assertTrue(queue.isEmpty());
+	}
+}
@@ -0,0 +1,350 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.csstudio.swt.xygraph.dataprovider.CircularBuffer;
+import org.csstudio.swt.xygraph.dataprovider.CircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.ColumnarCircularBufferDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProvider;
+import org.csstudio.swt.xygraph.dataprovider.IDataProviderListener;
+import org.csstudio.swt.xygraph.dataprovider.ISample;
+import org.csstudio.swt.xygraph.dataprovider.Sample;
+import org.csstudio.swt.xygraph.figures.Trace;
+import org.csstudio.swt.xygraph.figures.XYGraph;
+import org.csstudio.swt.xygraph.figures.Trace.PointStyle;
+import org.csstudio.swt.xygraph.figures.Trace.TraceType;
+import org.csstudio.swt.xygraph.linearscale.LinearScale;
+import org.csstudio.swt.xygraph.linearscale.LinearScale.Orientation;
+import org.eclipse.draw2d.SWTGraphics;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Micro benchmarks for the hot paths of the XY Graph: the data providers,
+ * the scale math and the painting of traces.
+ * <p>
+ * This is a common java program, <b>not</b> a JUnit test.
+ * Every benchmark is warmed up for {@link #WARMUP_ITERATIONS} iterations,
+ * then measured for {@link #MEASUREMENT_ITERATIONS} iterations of about
+ * {@link #ITERATION_MILLIS} ms each, and the time per operation is printed.
+ * The arguments select the benchmarks whose names contain one of them;
+ * without arguments, all benchmarks are run.
+ * <p>
+ * The benchmarks of the scales and traces need a display. They are skipped
+ * if there is none, so on a headless Linux machine run the program in Xvfb,
+ * for example <code>xvfb-run java ... XYGraphBenchmark</code>.
+ * </p>
+ */
+public class XYGraphBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASUREMENT_ITERATIONS = 10;
+	private static final long ITERATION_MILLIS = 200;
+
+	private static final int[] DATA_SIZES = new int[]{1000, 100000, 1000000};
+
+	/** Results are added to this, so the JIT cannot remove the benchmarked code */
+	private static double sink;
+
+	/** A benchmark which performs a number of operations in every call of {@link #run()}. */
+	private static abstract class Benchmark {
+		final String name;
+
+		Benchmark(final String name) {
+			this.name = name;
+		}
+
+		void setUp() {
+		}
+
+		/** @return the number of operations performed */
+		abstract int run();
+
+		void tearDown() {
+		}
+	}
+
+	public static void main(final String[] args) {
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		addDataBenchmarks(benchmarks);
+		Display display = null;
+		try{
+			display = Display.getDefault();
+		}catch (Throwable e) {
+			System.out.println("No display, skipping the scale and trace benchmarks: " + e.getMessage()); //$NON-NLS-1$
+		}
+		if(display != null)
+			addGraphicsBenchmarks(benchmarks, display);
+
+		System.out.println(String.format("%-60s %14s %10s", "Benchmark", "ns/op", "error")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		for(Benchmark benchmark : benchmarks){
+			if(!isSelected(benchmark.name, args))
+				continue;
+			benchmark.setUp();
+			try{
+				for(int i=0; i<WARMUP_ITERATIONS; i++)
+					measure(benchmark);
+				final double[] results = new double[MEASUREMENT_ITERATIONS];
+				for(int i=0; i<MEASUREMENT_ITERATIONS; i++)
+					results[i] = measure(benchmark);
+				double mean = 0;
+				for(double result : results)
+					mean += result / results.length;
+				double variance = 0;
+				for(double result : results)
+					variance += (result - mean) * (result - mean) / (results.length - 1);
+				System.out.println(String.format("%-60s %14.1f %10.1f", //$NON-NLS-1$
+						benchmark.name, mean, Math.sqrt(variance)));
+			}finally{
+				benchmark.tearDown();
+			}
+		}
+		if(sink == 42)
+			System.out.println();
+	}
+
+	private static boolean isSelected(final String name, final String[] filters) {
+		if(filters.length == 0)
+			return true;
+		for(String filter : filters)
+			if(name.contains(filter))
+				return true;
+		return false;
+	}
+
+	/** @return nanoseconds per operation of one iteration */
+	private static double measure(final Benchmark benchmark) {
+		final long end = System.nanoTime() + ITERATION_MILLIS * 1000000L;
+		long operations = 0;
+		final long start = System.nanoTime();
+		long now;
+		do{
+			operations += benchmark.run();
+			now = System.nanoTime();
+		}while(now < end);
+		return (double)(now - start) / operations;
+	}
+
+	private static void addDataBenchmarks(final List<Benchmark> benchmarks) {
+		final Sample sample = new Sample(1, 2);
+		benchmarks.add(new Benchmark("CircularBuffer.add") { //$NON-NLS-1$
+			final CircularBuffer<ISample> buffer = new CircularBuffer<ISample>(100000);
+			@Override
+			int run() {
+				for(int i=0; i<10000; i++)
+					buffer.add(sample);
+				return 10000;
+			}
+		});
+		for(final int size : DATA_SIZES){
+			benchmarks.add(new Benchmark("CircularBuffer.getElement size=" + size) { //$NON-NLS-1$
+				final CircularBuffer<ISample> buffer = createBuffer(size);
+				@Override
+				int run() {
+					double sum = 0;
+					for(int i=0; i<size; i++)
+						sum += buffer.getElement(i).getYValue();
+					sink += sum;
+					return size;
+				}
+			});
+			benchmarks.add(new Benchmark("CircularBuffer.iterator size=" + size) { //$NON-NLS-1$
+				final CircularBuffer<ISample> buffer = createBuffer(size);
+				@Override
+				int run() {
+					double sum = 0;
+					final Iterator<ISample> iterator = buffer.iterator();
+					while(iterator.hasNext())
+						sum += iterator.next().getYValue();
+					sink += sum;
+					return size;
+				}
+			});
+		}
+		benchmarks.add(new Benchmark("CircularBufferDataProvider.addSample") { //$NON-NLS-1$
+			final CircularBufferDataProvider data = createProvider(100000);
+			@Override
+			int run() {
+				for(int i=0; i<10000; i++)
+					data.addSample(sample);
+				return 10000;
+			}
+		});
+		benchmarks.add(new Benchmark("CircularBufferDataProvider.addSample with listener") { //$NON-NLS-1$
+			final CircularBufferDataProvider data = createProvider(100000);
+			@Override
+			void setUp() {
+				// like a trace which auto-scales its axes on every change
+				data.addDataProviderListener(new IDataProviderListener(){
+					public void dataChanged(IDataProvider dataProvider) {
+						sink += dataProvider.getXDataMinMax().getUpper() +
+							dataProvider.getYDataMinMax().getUpper();
+					}
+				});
+			}
+			@Override
+			int run() {
+				for(int i=0; i<10000; i++)
+					data.addSample(sample);
+				return 10000;
+			}
+		});
+		benchmarks.add(new Benchmark("ColumnarCircularBufferDataProvider.addSamples") { //$NON-NLS-1$
+			final ColumnarCircularBufferDataProvider data = new ColumnarCircularBufferDataProvider(true);
+			final double[] x = new double[10000];
+			final double[] y = new double[10000];
+			@Override
+			void setUp() {
+				data.setBufferSize(100000);
+			}
+			@Override
+			int run() {
+				data.addSamples(x, y, 0, x.length);
+				return x.length;
+			}
+		});
+		for(final int size : DATA_SIZES)
+			benchmarks.add(new Benchmark("CircularBufferDataProvider.updateDataRange size=" + size) { //$NON-NLS-1$
+				final CircularBufferDataProvider data = createProvider(size);
+				final Random random = new Random(1);
+				@Override
+				void setUp() {
+					for(int i=0; i<size; i++)
+						data.addSample(new Sample(i, random.nextGaussian()));
+				}
+				@Override
+				int run() {
+					data.addSample(new Sample(0, random.nextGaussian()));
+					sink += data.getYDataMinMax().getUpper();
+					return 1;
+				}
+			});
+	}
+
+	private static void addGraphicsBenchmarks(final List<Benchmark> benchmarks, final Display display) {
+		final LinearScale scale = new LinearScale();
+		scale.setOrientation(Orientation.HORIZONTAL);
+		scale.setBounds(new Rectangle(0, 0, 1000, 50));
+		scale.setRange(-123.4, 5678.9);
+		benchmarks.add(new Benchmark("LinearScale.getValuePosition") { //$NON-NLS-1$
+			@Override
+			int run() {
+				int sum = 0;
+				for(int i=0; i<10000; i++)
+					sum += scale.getValuePosition(i * 0.5, false);
+				sink += sum;
+				return 10000;
+			}
+		});
+		benchmarks.add(new Benchmark("LinearScale.valuesToPositions") { //$NON-NLS-1$
+			final double[] values = new double[10000];
+			final int[] positions = new int[10000];
+			@Override
+			void setUp() {
+				for(int i=0; i<values.length; i++)
+					values[i] = i * 0.5;
+			}
+			@Override
+			int run() {
+				scale.valuesToPositions(values, positions, values.length);
+				sink += positions[values.length - 1];
+				return values.length;
+			}
+		});
+		benchmarks.add(new Benchmark("LinearScale.getPositionValue") { //$NON-NLS-1$
+			@Override
+			int run() {
+				double sum = 0;
+				for(int i=0; i<10000; i++)
+					sum += scale.getPositionValue(i % 1000, false);
+				sink += sum;
+				return 10000;
+			}
+		});
+		benchmarks.add(new Benchmark("LinearScaleTickLabels.update") { //$NON-NLS-1$
+			int step = 0;
+			@Override
+			int run() {
+				// a new range marks the ticks dirty
+				scale.setRange(-123.4 + (step++ % 100), 5678.9);
+				scale.updateTick();
+				return 1;
+			}
+		});
+		for(final TraceType traceType : new TraceType[]{TraceType.SOLID_LINE,
+				TraceType.STEP_HORIZONTALLY, TraceType.AREA, TraceType.BAR, TraceType.POINT})
+			for(final int size : DATA_SIZES)
+				benchmarks.add(new TracePaintBenchmark(display, traceType, size));
+	}
+
+	/** Paint a trace into an offscreen image */
+	private static class TracePaintBenchmark extends Benchmark {
+		private final Display display;
+		private final TraceType traceType;
+		private final int size;
+		private Trace trace;
+		private Image image;
+		private GC gc;
+		private SWTGraphics graphics;
+
+		TracePaintBenchmark(final Display display, final TraceType traceType, final int size) {
+			super("Trace.paintFigure " + traceType.name() + " size=" + size); //$NON-NLS-1$ //$NON-NLS-2$
+			this.display = display;
+			this.traceType = traceType;
+			this.size = size;
+		}
+
+		@Override
+		void setUp() {
+			final CircularBufferDataProvider data = createProvider(size);
+			final Random random = new Random(2);
+			double y = 0;
+			for(int i=0; i<size; i++){
+				y += random.nextGaussian();
+				data.addSample(new Sample(i, y));
+			}
+			final XYGraph xyGraph = new XYGraph();
+			xyGraph.setBounds(new Rectangle(0, 0, 800, 500));
+			trace = new Trace("Benchmark", xyGraph.primaryXAxis, xyGraph.primaryYAxis, data); //$NON-NLS-1$
+			trace.setTraceType(traceType);
+			if(traceType == TraceType.POINT)
+				trace.setPointStyle(PointStyle.CIRCLE);
+			xyGraph.addTrace(trace);
+			xyGraph.primaryXAxis.setRange(0, size - 1);
+			xyGraph.primaryYAxis.performAutoScale(true);
+			xyGraph.validate();
+			image = new Image(display, 800, 500);
+			gc = new GC(image);
+			graphics = new SWTGraphics(gc);
+		}
+
+		@Override
+		int run() {
+			trace.paint(graphics);
+			return 1;
+		}
+
+		@Override
+		void tearDown() {
+			graphics.dispose();
+			gc.dispose();
+			image.dispose();
+		}
+	}
+
+	private static CircularBuffer<ISample> createBuffer(final int size) {
+		final CircularBuffer<ISample> buffer = new CircularBuffer<ISample>(size);
+		for(int i=0; i<size; i++)
+			buffer.add(new Sample(i, Math.sin(i)));
+		return buffer;
+	}
+
+	private static CircularBufferDataProvider createProvider(final int bufferSize) {
+		final CircularBufferDataProvider data = new CircularBufferDataProvider(true);
+		data.setBufferSize(bufferSize);
+		return data;
+	}
+}